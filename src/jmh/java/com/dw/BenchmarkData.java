@@ -0,0 +1,78 @@
+package com.dw;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+// Deterministic mobile CSV rows in the layout of the real feed
+public final class BenchmarkData {
+    public static final String HEADER = "name,brand,model,battery_capacity,screen_size,touchscreen,resolution_x,"
+            + "resolution_y,processor,ram,internal_storage,rear_camera,front_camera,operating_system,price";
+
+    private static final String[] BRANDS = {"Samsung", "Apple", "Xiaomi", "OnePlus", "Oppo", "Vivo", "Realme", "Nokia"};
+    private static final String[] PROCESSORS = {"Snapdragon 8 Gen 2", "Dimensity 9200", "A16 Bionic", "Exynos 2200", "Helio G99"};
+    private static final String[] OS = {"Android", "iOS"};
+
+    private BenchmarkData() {
+    }
+
+    // badRatio of the rows get a non-numeric value in one numeric column
+    public static String[] lines(int count, double badRatio, long seed) {
+        Random random = new Random(seed);
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = line(random, i, random.nextDouble() < badRatio);
+        }
+        return lines;
+    }
+
+    public static String[][] records(int count, double badRatio, long seed) {
+        String[] lines = lines(count, badRatio, seed);
+        String[][] records = new String[count][];
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        for (int i = 0; i < count; i++) {
+            tokenizer.tokenize(lines[i]);
+            records[i] = tokenizer.fields();
+        }
+        return records;
+    }
+
+    public static Path writeFile(int count, boolean gzip, long seed) throws IOException {
+        Path file = Files.createTempFile("mobile-bench-", gzip ? ".csv.gz" : ".csv");
+        file.toFile().deleteOnExit();
+        try (OutputStream out = gzip ? new GZIPOutputStream(Files.newOutputStream(file), 64 * 1024) : Files.newOutputStream(file);
+             Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.write('\n');
+            for (String line : lines(count, 0, seed)) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+        return file;
+    }
+
+    private static String line(Random random, int index, boolean bad) {
+        String brand = BRANDS[random.nextInt(BRANDS.length)];
+        String model = brand + " " + (char) ('A' + random.nextInt(26)) + (index % 5000);
+        String price = String.valueOf(99 + random.nextInt(1900)) + "." + random.nextInt(100);
+        String ram = String.valueOf(2 << random.nextInt(4));
+        if (bad) {
+            ram = "N/A";
+        }
+        // Quoted names with embedded commas exercise the quote-aware path
+        String name = random.nextInt(10) == 0 ? "\"" + model + ", 5G\"" : model;
+        return name + "," + brand + "," + model + "," + (3000 + random.nextInt(3000)) + ","
+                + (5 + random.nextInt(20) / 10.0) + "," + (random.nextBoolean() ? "Yes" : "No") + ","
+                + (720 + 360 * random.nextInt(3)) + "," + (1280 + 640 * random.nextInt(3)) + ","
+                + PROCESSORS[random.nextInt(PROCESSORS.length)] + "," + ram + "," + (32 << random.nextInt(4)) + ","
+                + (12 + random.nextInt(100)) + "," + (8 + random.nextInt(24)) + "," + OS[brand.equals("Apple") ? 1 : 0]
+                + "," + price;
+    }
+}
@@ -0,0 +1,43 @@
+package com.dw;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+// In-memory H2 stand-in for the SQL Server databases, created from benchmark-schema.sql
+public final class BenchmarkDatabase {
+    private BenchmarkDatabase() {
+    }
+
+    public static String url(String name) {
+        return "jdbc:h2:mem:" + name + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1";
+    }
+
+    // Opens (and on first use creates) the named database
+    public static Connection open(String name) throws SQLException {
+        Connection conn = DriverManager.getConnection(url(name));
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("RUNSCRIPT FROM 'classpath:/benchmark-schema.sql'");
+            try {
+                stmt.executeQuery("SELECT GETDATE()").close();
+            } catch (SQLException e) {
+                stmt.execute("CREATE ALIAS GETDATE FOR 'com.dw.BenchmarkDatabase.now'");
+            }
+        }
+        return conn;
+    }
+
+    public static void truncate(Connection conn, String... tables) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String table : tables) {
+                stmt.execute("TRUNCATE TABLE " + table);
+            }
+        }
+    }
+
+    public static Timestamp now() {
+        return new Timestamp(System.currentTimeMillis());
+    }
+}
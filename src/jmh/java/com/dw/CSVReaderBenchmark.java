@@ -0,0 +1,81 @@
+package com.dw;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Whole-file read of a 200k row feed: sequential reader on plain and gzip input, and the
+// memory-mapped parallel reader at several thread counts. Divide the file size by the score for MB/s.
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CSVReaderBenchmark {
+    private static final int ROWS = 200_000;
+
+    @State(Scope.Benchmark)
+    public static class Feed {
+        Path plain;
+        Path gzip;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            plain = BenchmarkData.writeFile(ROWS, false, 42);
+            gzip = BenchmarkData.writeFile(ROWS, true, 42);
+            System.out.println("plain " + Files.size(plain) + " bytes, gzip " + Files.size(gzip) + " bytes");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(plain);
+            Files.deleteIfExists(gzip);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Parallelism {
+        @Param({"1", "2", "4", "8"})
+        int threads;
+    }
+
+    @Benchmark
+    public int lineReader(Feed feed, Blackhole blackhole) throws IOException {
+        return read(new LineCSVReader(feed.plain.toString()), blackhole);
+    }
+
+    @Benchmark
+    public int lineReaderGzip(Feed feed, Blackhole blackhole) throws IOException {
+        return read(new LineCSVReader(feed.gzip.toString()), blackhole);
+    }
+
+    @Benchmark
+    public int mappedReader(Feed feed, Parallelism parallelism, Blackhole blackhole) throws IOException {
+        return read(new MappedCSVReader(feed.plain.toString(), parallelism.threads, DatabaseConfig.getParseChunkSize()), blackhole);
+    }
+
+    private static int read(CSVRowReader reader, Blackhole blackhole) throws IOException {
+        try (reader) {
+            while (reader.next()) {
+                blackhole.consume(reader.field(reader.fieldCount() - 1));
+            }
+            return reader.rowNumber();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.dw;
+
+import com.opencsv.CSVParser;
+import com.opencsv.CSVParserBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Per-line tokenizing cost: CSVTokenizer (offsets only / materialized fields) against split and OpenCSV
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CSVTokenizerBenchmark {
+    private static final int LINES = 10_000;
+
+    private String[] lines;
+    private CSVTokenizer tokenizer;
+    private CSVParser openCsvParser;
+
+    @Setup
+    public void setup() {
+        lines = BenchmarkData.lines(LINES, 0, 42);
+        tokenizer = new CSVTokenizer();
+        openCsvParser = new CSVParserBuilder().build();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void tokenizerOffsets(Blackhole blackhole) {
+        for (String line : lines) {
+            tokenizer.tokenize(line);
+            blackhole.consume(tokenizer.fieldEnd(tokenizer.fieldCount() - 1));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void tokenizerFields(Blackhole blackhole) {
+        for (String line : lines) {
+            tokenizer.tokenize(line);
+            blackhole.consume(tokenizer.fields());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void stringSplit(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(line.split(","));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void openCsvParseLine(Blackhole blackhole) throws IOException {
+        for (String line : lines) {
+            blackhole.consume(openCsvParser.parseLine(line));
+        }
+    }
+}
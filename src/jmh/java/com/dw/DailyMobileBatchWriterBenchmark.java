@@ -0,0 +1,71 @@
+package com.dw;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+// Binding and batching daily_mobile inserts through DailyMobileBatchWriter; batchSize=1 is the
+// row-at-a-time baseline. Scores are per row.
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DailyMobileBatchWriterBenchmark {
+    private static final int ROWS = 10_000;
+    private static final String DATABASE = "daily_mobile_bench";
+
+    @Param({"1", "100", "1000"})
+    int batchSize;
+
+    private Connection connection;
+    private ErrorLogger errorLogger;
+    private String[][] records;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        connection = BenchmarkDatabase.open(DATABASE);
+        errorLogger = new ErrorLogger(BenchmarkDatabase.url(DATABASE));
+        records = BenchmarkData.records(ROWS, 0, 42);
+    }
+
+    @Setup(Level.Iteration)
+    public void clearTable() throws SQLException {
+        BenchmarkDatabase.truncate(connection, "daily_mobile");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        errorLogger.close();
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int insertRows() throws SQLException {
+        try (DailyMobileBatchWriter writer = new DailyMobileBatchWriter(connection, errorLogger, "benchmark.csv",
+                batchSize, DatabaseConfig.getInsertCommitInterval())) {
+            for (int i = 0; i < ROWS; i++) {
+                writer.add(records[i], i + 1);
+            }
+            writer.finish();
+            return writer.getFailedRows();
+        }
+    }
+}
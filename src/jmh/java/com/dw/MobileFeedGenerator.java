@@ -0,0 +1,225 @@
+package com.dw;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+// Streams a synthetic daily_mobile feed of any size. A phone's specs, processor and base price are
+// derived from its (brand, model) pair, so the dimension cardinalities follow the configured brand,
+// model and processor counts. On top of the clean rows it mixes in exact duplicates of recent rows,
+// price changes for phones already written, blank fields and malformed rows at the given rates.
+//
+//   java -cp target/benchmarks.jar com.dw.MobileFeedGenerator --rows=10000000 --out=feed.csv.gz
+public final class MobileFeedGenerator {
+    private static final String[] BRANDS = {"Samsung", "Apple", "Xiaomi", "OnePlus", "Oppo", "Vivo", "Realme",
+            "Nokia", "Motorola", "Sony", "Google", "Huawei", "Honor", "Asus", "Lenovo", "Tecno"};
+    private static final String[] PROCESSORS = {"Snapdragon 8 Gen 2", "Snapdragon 778G", "Snapdragon 695",
+            "Dimensity 9200", "Dimensity 1080", "Dimensity 700", "A16 Bionic", "A15 Bionic", "Exynos 2200",
+            "Exynos 1380", "Helio G99", "Helio G85", "Tensor G2", "Kirin 9000", "Unisoc T610"};
+    private static final String[] SERIES = {"", " Lite", " Plus", " Pro", " Pro Max", " Ultra", " Neo", " 5G"};
+    private static final int[] RAM_GB = {1, 2, 3, 4, 6, 8, 12, 16};
+    private static final int[] STORAGE_GB = {16, 32, 64, 128, 256, 512};
+    private static final int[][] RESOLUTIONS = {{720, 1280}, {720, 1600}, {1080, 1920}, {1080, 2400},
+            {1170, 2532}, {1440, 3200}};
+    private static final String[] REAR_CAMERAS = {"8.0", "12.0", "13.0", "48.0", "50.0", "64.0", "108.0", "200.0"};
+    private static final String[] FRONT_CAMERAS = {"5.0", "8.0", "12.0", "16.0", "20.0", "32.0"};
+    private static final int[] NUMERIC_COLUMNS = {3, 4, 6, 7, 9, 10, 14};
+    private static final int RECENT_ROWS = 4096;
+
+    public record Spec(long rows, int brands, int modelsPerBrand, int processors, double duplicateRate,
+                       double nullRate, double priceChangeRate, double malformedRate, long seed) {
+
+        public static Spec defaults(long rows) {
+            return new Spec(rows, 12, 200, 15, 0.02, 0.01, 0.05, 0.005, 42);
+        }
+
+        // --rows=, --brands=, --models=, --processors=, --duplicate-rate=, --null-rate=,
+        // --price-change-rate=, --malformed-rate=, --seed=; anything not given keeps its default
+        public static Spec parse(Map<String, String> options) {
+            Spec d = defaults(Long.parseLong(options.getOrDefault("rows", "100000").replace("_", "")));
+            return new Spec(d.rows(),
+                    Integer.parseInt(options.getOrDefault("brands", String.valueOf(d.brands()))),
+                    Integer.parseInt(options.getOrDefault("models", String.valueOf(d.modelsPerBrand()))),
+                    Integer.parseInt(options.getOrDefault("processors", String.valueOf(d.processors()))),
+                    Double.parseDouble(options.getOrDefault("duplicate-rate", String.valueOf(d.duplicateRate()))),
+                    Double.parseDouble(options.getOrDefault("null-rate", String.valueOf(d.nullRate()))),
+                    Double.parseDouble(options.getOrDefault("price-change-rate", String.valueOf(d.priceChangeRate()))),
+                    Double.parseDouble(options.getOrDefault("malformed-rate", String.valueOf(d.malformedRate()))),
+                    Long.parseLong(options.getOrDefault("seed", String.valueOf(d.seed()))));
+        }
+
+        public long distinctPhones() {
+            return (long) brands * modelsPerBrand;
+        }
+    }
+
+    public record Stats(long rows, long duplicates, long priceChanges, long nullFields, long malformed) {
+        @Override
+        public String toString() {
+            return String.format("%,d rows: %,d duplicates, %,d price changes, %,d blank fields, %,d malformed",
+                    rows, duplicates, priceChanges, nullFields, malformed);
+        }
+    }
+
+    private final Spec spec;
+    private final Random random;
+    private final String[] recentLines = new String[RECENT_ROWS];
+    private final int[] recentPhones = new int[RECENT_ROWS];
+    private final StringBuilder line = new StringBuilder(256);
+    private final String[] fields = new String[BenchmarkData.HEADER.split(",").length];
+    private long written;
+    private long remembered;
+    private long duplicates;
+    private long priceChanges;
+    private long nullFields;
+    private long malformed;
+
+    private MobileFeedGenerator(Spec spec) {
+        this.spec = spec;
+        this.random = new Random(spec.seed());
+    }
+
+    public static Stats write(Spec spec, Path file) throws IOException {
+        boolean gzip = file.getFileName().toString().endsWith(".gz");
+        try (OutputStream out = gzip
+                ? new GZIPOutputStream(Files.newOutputStream(file), 64 * 1024)
+                : Files.newOutputStream(file);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1024 * 1024)) {
+            return write(spec, writer);
+        }
+    }
+
+    public static Stats write(Spec spec, Writer writer) throws IOException {
+        return new MobileFeedGenerator(spec).run(writer);
+    }
+
+    private Stats run(Writer writer) throws IOException {
+        writer.write(BenchmarkData.HEADER);
+        writer.write('\n');
+        for (; written < spec.rows(); written++) {
+            writer.write(nextLine());
+            writer.write('\n');
+        }
+        return new Stats(written, duplicates, priceChanges, nullFields, malformed);
+    }
+
+    private String nextLine() {
+        double roll = random.nextDouble();
+        int slots = (int) Math.min(remembered, RECENT_ROWS);
+
+        if (slots > 0 && roll < spec.duplicateRate()) {
+            duplicates++;
+            return recentLines[random.nextInt(slots)];
+        }
+        roll -= spec.duplicateRate();
+
+        int phone;
+        boolean priceChange = slots > 0 && roll >= 0 && roll < spec.priceChangeRate();
+        if (priceChange) {
+            phone = recentPhones[random.nextInt(slots)];
+            priceChanges++;
+        } else {
+            phone = (int) random.nextLong(spec.distinctPhones());
+        }
+        fillFields(phone, priceChange);
+
+        String result;
+        if (random.nextDouble() < spec.malformedRate()) {
+            malformed++;
+            if (random.nextBoolean()) {
+                // Row cut short, as from a truncated export
+                result = join(fields.length - 1 - random.nextInt(4));
+            } else {
+                fields[NUMERIC_COLUMNS[random.nextInt(NUMERIC_COLUMNS.length)]] = random.nextBoolean() ? "N/A" : "unknown";
+                result = join(fields.length);
+            }
+            return result;
+        }
+        if (random.nextDouble() < spec.nullRate()) {
+            nullFields++;
+            fields[random.nextInt(fields.length)] = "";
+        }
+        result = join(fields.length);
+
+        int slot = (int) (remembered++ % RECENT_ROWS);
+        recentLines[slot] = result;
+        recentPhones[slot] = phone;
+        return result;
+    }
+
+    // Everything but the price is a function of the phone, so repeated phones repeat their specs
+    private void fillFields(int phone, boolean priceChange) {
+        int brandIndex = phone / spec.modelsPerBrand();
+        int modelIndex = phone % spec.modelsPerBrand();
+        Random phoneRandom = new Random(spec.seed() * 31 + phone);
+
+        String brand = brandIndex < BRANDS.length ? BRANDS[brandIndex] : "Brand" + brandIndex;
+        String model = brand.charAt(0) + String.valueOf(10 + modelIndex / SERIES.length) + SERIES[modelIndex % SERIES.length];
+        boolean apple = brand.equals("Apple");
+        int processor = phoneRandom.nextInt(spec.processors());
+        int[] resolution = RESOLUTIONS[phoneRandom.nextInt(RESOLUTIONS.length)];
+
+        // Real product names sometimes carry a comma, which forces the quoted CSV path
+        fields[0] = phoneRandom.nextInt(10) == 0 ? "\"" + brand + " " + model + ", Dual SIM\"" : brand + " " + model;
+        fields[1] = brand;
+        fields[2] = model;
+        fields[3] = String.valueOf(2000 + 100 * phoneRandom.nextInt(41));
+        fields[4] = String.valueOf(4 + phoneRandom.nextInt(31) / 10.0);
+        fields[5] = phoneRandom.nextInt(20) == 0 ? "No" : "Yes";
+        fields[6] = String.valueOf(resolution[0]);
+        fields[7] = String.valueOf(resolution[1]);
+        fields[8] = processor < PROCESSORS.length ? PROCESSORS[processor] : "Chipset " + processor;
+        fields[9] = String.valueOf(RAM_GB[phoneRandom.nextInt(RAM_GB.length)]);
+        fields[10] = String.valueOf(STORAGE_GB[phoneRandom.nextInt(STORAGE_GB.length)]);
+        fields[11] = REAR_CAMERAS[phoneRandom.nextInt(REAR_CAMERAS.length)];
+        fields[12] = FRONT_CAMERAS[phoneRandom.nextInt(FRONT_CAMERAS.length)];
+        fields[13] = apple ? "iOS" : "Android";
+
+        long baseCents = 5_000 + phoneRandom.nextInt(195_000);
+        long cents = priceChange ? baseCents + (long) (baseCents * (random.nextDouble() * 0.3 - 0.15)) : baseCents;
+        fields[14] = cents / 100 + "." + (cents % 100 < 10 ? "0" : "") + cents % 100;
+    }
+
+    private String join(int count) {
+        line.setLength(0);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            line.append(fields[i]);
+        }
+        return line.toString();
+    }
+
+    public static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseOptions(args);
+        Spec spec = Spec.parse(options);
+        Path out = Path.of(options.getOrDefault("out", "mobile_feed.csv"));
+
+        long start = System.nanoTime();
+        Stats stats = write(spec, out);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Wrote %s to %s in %.1f s (%,.0f rows/s)%n", stats, out, seconds, stats.rows() / seconds);
+    }
+}
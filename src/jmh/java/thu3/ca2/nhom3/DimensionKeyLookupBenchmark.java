@@ -0,0 +1,86 @@
+package thu3.ca2.nhom3;
+
+import com.dw.BenchmarkDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Tra khóa chiều: DataTransformer.getDimKey (một câu SELECT mỗi lần) so với DimensionKeyCache và HashMap.
+// Cần chạy từ thư mục gốc dự án vì DataTransformer đọc config.properties.
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DimensionKeyLookupBenchmark {
+	private static final int PROCESSORS = 1_000;
+
+	private Connection connection;
+	private DataTransformer transformer;
+	private DimensionKeyCache cache;
+	private String[] names;
+	private final Map<String, Integer> keys = new HashMap<>();
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() throws SQLException {
+		connection = BenchmarkDatabase.open("warehouse_bench");
+		BenchmarkDatabase.truncate(connection, "DimProcessor");
+		names = new String[PROCESSORS];
+		try (PreparedStatement insert = connection.prepareStatement("INSERT INTO DimProcessor (ProcessorName) VALUES (?)")) {
+			for (int i = 0; i < PROCESSORS; i++) {
+				names[i] = "Processor " + i;
+				insert.setString(1, names[i]);
+				insert.addBatch();
+			}
+			insert.executeBatch();
+		}
+		transformer = new DataTransformer();
+		for (String name : names) {
+			keys.put(name, transformer.getDimKey("DimProcessor", "ProcessorName", name, connection));
+		}
+		cache = new DimensionKeyCache(PROCESSORS);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		connection.close();
+	}
+
+	@Benchmark
+	public int getDimKey() throws SQLException {
+		return transformer.getDimKey("DimProcessor", "ProcessorName", nextName(), connection);
+	}
+
+	@Benchmark
+	public int dimensionKeyCache() throws SQLException {
+		return cache.get(connection, "DimProcessor", "ProcessorName", nextName());
+	}
+
+	@Benchmark
+	public Integer hashMapLookup() {
+		return keys.get(nextName());
+	}
+
+	private String nextName() {
+		next = next + 1 == PROCESSORS ? 0 : next + 1;
+		return names[next];
+	}
+}
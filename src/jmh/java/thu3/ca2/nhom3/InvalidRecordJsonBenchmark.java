@@ -0,0 +1,71 @@
+package thu3.ca2.nhom3;
+
+import com.dw.BenchmarkData;
+import com.dw.BenchmarkDatabase;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+// Chuyển một dòng staging_mobile thành JSON như khi chuyển sang invalid_records
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class InvalidRecordJsonBenchmark {
+	private static final int ROWS = 1_000;
+
+	private Connection connection;
+	private Statement statement;
+	private ResultSet rows;
+
+	@Setup(Level.Trial)
+	public void setup() throws SQLException {
+		connection = BenchmarkDatabase.open("staging_json_bench");
+		BenchmarkDatabase.truncate(connection, "staging_mobile");
+		MobileRecordDecoder decoder = new MobileRecordDecoder();
+		try (PreparedStatement insert = connection.prepareStatement(CSVLoader.INSERT_STAGING_SQL)) {
+			for (String[] record : BenchmarkData.records(ROWS, 0, 42)) {
+				StagingMobileInsertBenchmark.bind(insert, record, decoder);
+				insert.addBatch();
+			}
+			insert.executeBatch();
+		}
+		statement = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+		rows = statement.executeQuery("SELECT * FROM staging_mobile");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		rows.close();
+		statement.close();
+		connection.close();
+	}
+
+	@Benchmark
+	public String extractRecordAsJson() throws SQLException, JsonProcessingException {
+		if (!rows.next()) {
+			rows.beforeFirst();
+			rows.next();
+		}
+		return DataWarehouseETL.extractRecordAsJson(rows);
+	}
+}
@@ -0,0 +1,68 @@
+package thu3.ca2.nhom3;
+
+import com.dw.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// Giải mã các cột số: MobileRecordDecoder so với Integer/Double.parseInt kèm exception như trước
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MobileRecordDecoderBenchmark {
+	private static final int ROWS = 10_000;
+
+	@Param({"0", "0.1"})
+	double badRatio;
+
+	private String[][] records;
+	private MobileRecordDecoder decoder;
+
+	@Setup
+	public void setup() {
+		records = BenchmarkData.records(ROWS, badRatio, 42);
+		decoder = new MobileRecordDecoder();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void decoder(Blackhole blackhole) {
+		for (String[] record : records) {
+			blackhole.consume(decoder.decode(record));
+			blackhole.consume(decoder.price);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void jdkParseWithExceptions(Blackhole blackhole) {
+		for (String[] record : records) {
+			try {
+				blackhole.consume(Double.parseDouble(record[14]));
+				blackhole.consume(Integer.parseInt(record[3]));
+				blackhole.consume(Double.parseDouble(record[4]));
+				blackhole.consume(Integer.parseInt(record[6]));
+				blackhole.consume(Integer.parseInt(record[7]));
+				blackhole.consume(Integer.parseInt(record[9]));
+				blackhole.consume(Integer.parseInt(record[10]));
+			} catch (NumberFormatException e) {
+				blackhole.consume(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package thu3.ca2.nhom3;
+
+import com.dw.BenchmarkDatabase;
+import com.dw.ConnectionPool;
+import com.dw.MobileFeedGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+// Chạy toàn bộ DataWarehouseETL (extract → validate → transform → load) trên H2 thay cho SQL Server,
+// với một file sinh bởi MobileFeedGenerator, và in thời gian cùng số dòng/giây của từng bước.
+// Các tùy chọn của MobileFeedGenerator được dùng cho file; tùy chọn có dấu chấm ghi đè config.properties:
+//
+//   java -cp target/benchmarks.jar thu3.ca2.nhom3.PipelineBenchmark --rows=1000000 --runs=3 \
+//        --staging.index.enable=false
+//   java -cp target/benchmarks.jar thu3.ca2.nhom3.PipelineBenchmark --rows=1000000 \
+//        --staging.upsert.engine=merge --staging.ingest.mode=bulk
+public final class PipelineBenchmark {
+	private static final String DATABASE = "pipeline_bench";
+	private static final String[] TABLES = {"staging_mobile", "price_update_log", "invalid_records",
+			"DimBrand", "DimModel", "DimSpecification", "DimProcessor", "DimCamera", "DimOS", "FactPhone",
+			"fact_price_update_log", "etl_job_log", "etl_step_log", "data_quality_log"};
+
+	private record StageResult(String stage, long nanos, long rowsIn, long rowsOut) {
+		double rowsPerSecond() {
+			return nanos == 0 ? 0 : rowsIn * 1e9 / nanos;
+		}
+	}
+
+	private PipelineBenchmark() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = MobileFeedGenerator.parseOptions(args);
+		MobileFeedGenerator.Spec spec = MobileFeedGenerator.Spec.parse(options);
+		int runs = Integer.parseInt(options.getOrDefault("runs", "3"));
+		boolean gzip = Boolean.parseBoolean(options.getOrDefault("gzip", "false"));
+
+		Path feed = Files.createTempFile("mobile-feed-", gzip ? ".csv.gz" : ".csv");
+		feed.toFile().deleteOnExit();
+		long start = System.nanoTime();
+		MobileFeedGenerator.Stats stats = MobileFeedGenerator.write(spec, feed);
+		System.out.printf("Generated %s in %d ms%n", stats, (System.nanoTime() - start) / 1_000_000);
+
+		// Các lớp ETL đọc cấu hình qua -Detl.config, nên trỏ nó tới một bản sao dùng H2
+		Path config = writeConfig(feed, options);
+		System.setProperty("etl.config", config.toString());
+
+		try (Connection conn = BenchmarkDatabase.open(DATABASE)) {
+			for (int run = 1; run <= runs; run++) {
+				BenchmarkDatabase.truncate(conn, TABLES);
+				List<StageResult> results = runPipeline(spec.rows());
+				print(run == 1 ? "Run 1 (warm-up)" : "Run " + run, results);
+			}
+		} finally {
+			ConnectionPool.closeAll();
+		}
+	}
+
+	private static Path writeConfig(Path feed, Map<String, String> options) throws IOException {
+		Properties props = new Properties();
+		Path base = Path.of("config.properties");
+		if (Files.exists(base)) {
+			try (InputStream in = Files.newInputStream(base)) {
+				props.load(in);
+			}
+		}
+		String url = BenchmarkDatabase.url(DATABASE);
+		props.setProperty("csv.file.path", feed.toString());
+		props.setProperty("staging.db.url", url);
+		props.setProperty("warehouse.db.url", url);
+		props.setProperty("control.db.url", url);
+		// Mặc định đo nhánh row + batch; --staging.upsert.engine=merge và --staging.ingest.mode=bulk vẫn chạy
+		// được trên H2 (bảng LOCAL TEMPORARY thay cho #, bulk rơi về batch INSERT)
+		props.setProperty("staging.upsert.engine", "row");
+		props.setProperty("staging.ingest.mode", "batch");
+		options.forEach((key, value) -> {
+			if (key.contains(".")) {
+				props.setProperty(key, value);
+			}
+		});
+
+		Path config = Files.createTempFile("pipeline-bench-", ".properties");
+		config.toFile().deleteOnExit();
+		try (OutputStream out = Files.newOutputStream(config)) {
+			props.store(out, "PipelineBenchmark");
+		}
+		return config;
+	}
+
+	private static List<StageResult> runPipeline(long feedRows) throws Exception {
+		List<StageResult> results = new ArrayList<>();
+		ETLControlManager controlManager = new ETLControlManager();
+		String url = BenchmarkDatabase.url(DATABASE);
+		try (Connection stagingConn = ConnectionPool.getConnection(url);
+			 Connection warehouseConn = ConnectionPool.getConnection(url)) {
+			controlManager.startJob("Mobile_Data_ETL_Benchmark");
+
+			long start = System.nanoTime();
+			int loaded = new CSVLoader().loadCSVToStaging();
+			results.add(new StageResult("extract", System.nanoTime() - start, feedRows, loaded));
+
+			long staged = count(stagingConn, "staging_mobile");
+			start = System.nanoTime();
+			int invalid = DataWarehouseETL.validateDataQuality("staging_mobile", stagingConn, controlManager);
+			results.add(new StageResult("validate", System.nanoTime() - start, staged, invalid));
+
+			staged = count(stagingConn, "staging_mobile");
+			DataTransformer transformer = new DataTransformer();
+			start = System.nanoTime();
+			int dimensionRows = transformer.loadDimensions(stagingConn, warehouseConn);
+			results.add(new StageResult("transform", System.nanoTime() - start, staged, dimensionRows));
+
+			start = System.nanoTime();
+			int factRows = transformer.loadFactPhone(stagingConn, warehouseConn);
+			results.add(new StageResult("load", System.nanoTime() - start, staged, factRows));
+
+			controlManager.endJob("COMPLETED", loaded, null);
+		} finally {
+			controlManager.close();
+		}
+		return results;
+	}
+
+	private static long count(Connection conn, String table) throws SQLException {
+		try (Statement stmt = conn.createStatement();
+			 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+			rs.next();
+			return rs.getLong(1);
+		}
+	}
+
+	private static void print(String title, List<StageResult> results) {
+		System.out.println();
+		System.out.println(title);
+		System.out.printf("%-10s %12s %14s %14s %14s%n", "stage", "time (ms)", "rows in", "rows/s", "rows out");
+		long totalNanos = 0;
+		for (StageResult result : results) {
+			System.out.printf("%-10s %,12d %,14d %,14.0f %,14d%n", result.stage(), result.nanos() / 1_000_000,
+					result.rowsIn(), result.rowsPerSecond(), result.rowsOut());
+			totalNanos += result.nanos();
+		}
+		long feedRows = results.get(0).rowsIn();
+		System.out.printf("%-10s %,12d %,14d %,14.0f%n", "total", totalNanos / 1_000_000, feedRows,
+				totalNanos == 0 ? 0 : feedRows * 1e9 / totalNanos);
+	}
+}
@@ -0,0 +1,97 @@
+package thu3.ca2.nhom3;
+
+import com.dw.BenchmarkData;
+import com.dw.BenchmarkDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+// Giải mã + gán tham số + batch cho câu INSERT staging_mobile của CSVLoader; điểm tính theo từng dòng
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StagingMobileInsertBenchmark {
+	private static final int ROWS = 5_000;
+
+	@Param({"1", "500"})
+	int batchSize;
+
+	private Connection connection;
+	private String[][] records;
+	private MobileRecordDecoder decoder;
+
+	@Setup(Level.Trial)
+	public void setup() throws SQLException {
+		connection = BenchmarkDatabase.open("staging_insert_bench");
+		records = BenchmarkData.records(ROWS, 0, 42);
+		decoder = new MobileRecordDecoder();
+	}
+
+	@Setup(Level.Iteration)
+	public void clearTable() throws SQLException {
+		BenchmarkDatabase.truncate(connection, "staging_mobile");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		connection.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void insertRows() throws SQLException {
+		try (PreparedStatement insert = connection.prepareStatement(CSVLoader.INSERT_STAGING_SQL)) {
+			int pending = 0;
+			for (String[] record : records) {
+				bind(insert, record, decoder);
+				insert.addBatch();
+				if (++pending == batchSize) {
+					insert.executeBatch();
+					pending = 0;
+				}
+			}
+			if (pending > 0) {
+				insert.executeBatch();
+			}
+		}
+	}
+
+	// Gán tham số giống nhánh thêm mới trong CSVLoader.loadCSVToStaging
+	static void bind(PreparedStatement insert, String[] record, MobileRecordDecoder decoder) throws SQLException {
+		decoder.decode(record);
+		insert.setString(1, record[0]);
+		insert.setString(2, record[1]);
+		insert.setString(3, record[2]);
+		insert.setInt(4, decoder.batteryCapacity);
+		insert.setDouble(5, decoder.screenSize);
+		insert.setBoolean(6, decoder.touchscreen);
+		insert.setInt(7, decoder.resolutionX);
+		insert.setInt(8, decoder.resolutionY);
+		insert.setString(9, record[8]);
+		insert.setInt(10, decoder.ram);
+		insert.setInt(11, decoder.internalStorage);
+		insert.setString(12, record[11]);
+		insert.setString(13, record[12]);
+		insert.setString(14, record[13]);
+		insert.setDouble(15, decoder.price);
+	}
+}
@@ -0,0 +1,58 @@
+-- Stand-in for the staging and warehouse tables used by the benchmarks (H2, MODE=MSSQLServer)
+CREATE TABLE IF NOT EXISTS daily_mobile (
+    id INT IDENTITY PRIMARY KEY,
+    raw_name NVARCHAR(255), raw_brand NVARCHAR(255), raw_model NVARCHAR(255),
+    raw_battery_capacity NVARCHAR(50), raw_screen_size NVARCHAR(50), raw_touchscreen BIT,
+    raw_resolution_x NVARCHAR(50), raw_resolution_y NVARCHAR(50), raw_processor NVARCHAR(255),
+    raw_ram NVARCHAR(50), raw_internal_storage NVARCHAR(50), raw_rear_camera NVARCHAR(255),
+    raw_front_camera NVARCHAR(255), raw_operating_system NVARCHAR(255), raw_price NVARCHAR(50),
+    source_file_name NVARCHAR(500), row_number INT
+);
+
+CREATE TABLE IF NOT EXISTS staging_mobile (
+    id INT IDENTITY PRIMARY KEY,
+    name NVARCHAR(255), brand NVARCHAR(255), model NVARCHAR(255),
+    battery_capacity INT, screen_size FLOAT, touchscreen BIT, resolution_x INT, resolution_y INT,
+    processor NVARCHAR(255), ram INT, internal_storage INT, rear_camera NVARCHAR(255),
+    front_camera NVARCHAR(255), operating_system NVARCHAR(255), price FLOAT,
+    loaded_date DATETIME, last_updated DATETIME
+);
+
+CREATE TABLE IF NOT EXISTS price_update_log (
+    id INT IDENTITY PRIMARY KEY, mobile_id INT, old_price FLOAT, new_price FLOAT, updated_at DATETIME
+);
+
+CREATE TABLE IF NOT EXISTS DimBrand (BrandKey INT IDENTITY PRIMARY KEY, BrandName NVARCHAR(255));
+CREATE TABLE IF NOT EXISTS DimModel (ModelKey INT IDENTITY PRIMARY KEY, ModelName NVARCHAR(255), BrandKey INT);
+CREATE TABLE IF NOT EXISTS DimSpecification (
+    SpecKey INT IDENTITY PRIMARY KEY, BatteryCapacity INT, ScreenSize FLOAT, Touchscreen BIT,
+    ResolutionX INT, ResolutionY INT, RAM INT, InternalStorage INT
+);
+CREATE TABLE IF NOT EXISTS DimProcessor (ProcessorKey INT IDENTITY PRIMARY KEY, ProcessorName NVARCHAR(255));
+CREATE TABLE IF NOT EXISTS DimCamera (CameraKey INT IDENTITY PRIMARY KEY, RearCamera NVARCHAR(255), FrontCamera NVARCHAR(255));
+CREATE TABLE IF NOT EXISTS DimOS (OSKey INT IDENTITY PRIMARY KEY, OSName NVARCHAR(255));
+CREATE TABLE IF NOT EXISTS FactPhone (
+    PhoneKey INT IDENTITY PRIMARY KEY, ModelKey INT, SpecKey INT, ProcessorKey INT, CameraKey INT, OSKey INT,
+    Price FLOAT, CreatedDate DATETIME, UpdatedDate DATETIME
+);
+CREATE TABLE IF NOT EXISTS fact_price_update_log (
+    id INT IDENTITY PRIMARY KEY, fact_id INT, old_price FLOAT, new_price FLOAT, updated_at DATETIME
+);
+
+
+-- Tables touched by DataWarehouseETL besides the ones above (staging and control databases)
+CREATE TABLE IF NOT EXISTS invalid_records (
+    id INT IDENTITY PRIMARY KEY, table_name NVARCHAR(255), invalid_record NVARCHAR(MAX), reason NVARCHAR(50)
+);
+CREATE TABLE IF NOT EXISTS etl_job_log (
+    job_id INT IDENTITY PRIMARY KEY, job_name NVARCHAR(255), start_time DATETIME, end_time DATETIME,
+    status NVARCHAR(50), records_processed INT, error_message NVARCHAR(MAX)
+);
+CREATE TABLE IF NOT EXISTS etl_step_log (
+    step_id INT IDENTITY PRIMARY KEY, job_id INT, step_name NVARCHAR(255), start_time DATETIME, end_time DATETIME,
+    status NVARCHAR(50), records_processed INT, error_message NVARCHAR(MAX), cpu_time_ms BIGINT
+);
+CREATE TABLE IF NOT EXISTS data_quality_log (
+    check_id INT IDENTITY PRIMARY KEY, job_id INT, check_name NVARCHAR(255), check_time DATETIME,
+    table_name NVARCHAR(255), failed_records INT, error_details NVARCHAR(MAX)
+);
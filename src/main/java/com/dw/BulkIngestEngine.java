@@ -0,0 +1,164 @@
+package com.dw;
+
+import com.microsoft.sqlserver.jdbc.ISQLServerBulkData;
+import com.microsoft.sqlserver.jdbc.ISQLServerConnection;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopy;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopyOptions;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+// Streams rows into a table with SQLServerBulkCopy. Rows are pulled from the iterator while
+// the bulk copy runs, so nothing is materialized. Other databases get batched INSERTs instead.
+public class BulkIngestEngine {
+    public record Column(String name, int sqlType, int precision, int scale) {
+        public static Column nvarchar(String name) {
+            return new Column(name, Types.NVARCHAR, 4000, 0);
+        }
+
+        public static Column bit(String name) {
+            return new Column(name, Types.BIT, 1, 0);
+        }
+    }
+
+    private final Connection connection;
+    private final String tableName;
+    private final List<Column> columns;
+    private final int batchSize;
+    private final boolean tableLock;
+
+    public BulkIngestEngine(Connection connection, String tableName, List<Column> columns, int batchSize, boolean tableLock) {
+        this.connection = connection;
+        this.tableName = tableName;
+        this.columns = columns;
+        this.batchSize = batchSize;
+        this.tableLock = tableLock;
+    }
+
+    public static boolean isSqlServer(Connection connection) throws SQLException {
+        return connection.isWrapperFor(ISQLServerConnection.class);
+    }
+
+    // Each row holds one value per configured column, in column order
+    public long load(Iterator<Object[]> rows) throws SQLException {
+        if (isSqlServer(connection)) {
+            return bulkCopy(rows);
+        }
+        return batchInsert(rows);
+    }
+
+    private long bulkCopy(Iterator<Object[]> rows) throws SQLException {
+        SQLServerBulkCopyOptions options = new SQLServerBulkCopyOptions();
+        options.setBatchSize(batchSize);
+        options.setTableLock(tableLock);
+        options.setBulkCopyTimeout(0);
+
+        RowIteratorBulkData data = new RowIteratorBulkData(rows, columns);
+        try (SQLServerBulkCopy bulkCopy = new SQLServerBulkCopy(connection.unwrap(ISQLServerConnection.class))) {
+            bulkCopy.setDestinationTableName(tableName);
+            bulkCopy.setBulkCopyOptions(options);
+            for (int i = 0; i < columns.size(); i++) {
+                bulkCopy.addColumnMapping(i + 1, columns.get(i).name());
+            }
+            bulkCopy.writeToServer(data);
+        }
+        return data.rowCount;
+    }
+
+    private long batchInsert(Iterator<Object[]> rows) throws SQLException {
+        String sql = "INSERT INTO " + tableName + " ("
+                + columns.stream().map(Column::name).collect(Collectors.joining(", "))
+                + ") VALUES ("
+                + columns.stream().map(column -> "?").collect(Collectors.joining(", "))
+                + ")";
+
+        long rowCount = 0;
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int batchCount = 0;
+            while (rows.hasNext()) {
+                Object[] row = rows.next();
+                for (int i = 0; i < columns.size(); i++) {
+                    stmt.setObject(i + 1, row[i], columns.get(i).sqlType());
+                }
+                stmt.addBatch();
+                rowCount++;
+
+                if (++batchCount == batchSize) {
+                    stmt.executeBatch();
+                    batchCount = 0;
+                }
+            }
+            if (batchCount > 0) {
+                stmt.executeBatch();
+            }
+        }
+        return rowCount;
+    }
+
+    // ISQLServerBulkData is Serializable, but this adapter only lives for one writeToServer call
+    private static class RowIteratorBulkData implements ISQLServerBulkData {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Iterator<Object[]> rows;
+        private final transient List<Column> columns;
+        private transient Object[] current;
+        private long rowCount;
+
+        RowIteratorBulkData(Iterator<Object[]> rows, List<Column> columns) {
+            this.rows = rows;
+            this.columns = columns;
+        }
+
+        @Override
+        public Set<Integer> getColumnOrdinals() {
+            Set<Integer> ordinals = new TreeSet<>();
+            for (int i = 1; i <= columns.size(); i++) {
+                ordinals.add(i);
+            }
+            return ordinals;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns.get(column - 1).name();
+        }
+
+        @Override
+        public int getColumnType(int column) {
+            return columns.get(column - 1).sqlType();
+        }
+
+        @Override
+        public int getPrecision(int column) {
+            return columns.get(column - 1).precision();
+        }
+
+        @Override
+        public int getScale(int column) {
+            return columns.get(column - 1).scale();
+        }
+
+        @Override
+        public Object[] getRowData() {
+            return current;
+        }
+
+        @Override
+        public boolean next() {
+            if (!rows.hasNext()) {
+                current = null;
+                return false;
+            }
+            current = rows.next();
+            rowCount++;
+            return true;
+        }
+    }
+}
@@ -1,24 +1,38 @@
 package com.dw;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.CallableStatement;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static com.dw.BulkIngestEngine.Column.bit;
+import static com.dw.BulkIngestEngine.Column.nvarchar;
 
 public class CSVProcessor implements AutoCloseable {
     private Connection connection;
     private static final int MAX_RETRIES = 3;
     private static final long RETRY_DELAY_MS = 2000;
+    private static final int DAILY_MOBILE_VALUE_COUNT = 15;
+    private static final List<BulkIngestEngine.Column> DAILY_MOBILE_COLUMNS = List.of(
+            nvarchar("raw_name"), nvarchar("raw_brand"), nvarchar("raw_model"),
+            nvarchar("raw_battery_capacity"), nvarchar("raw_screen_size"), bit("raw_touchscreen"),
+            nvarchar("raw_resolution_x"), nvarchar("raw_resolution_y"), nvarchar("raw_processor"),
+            nvarchar("raw_ram"), nvarchar("raw_internal_storage"), nvarchar("raw_rear_camera"),
+            nvarchar("raw_front_camera"), nvarchar("raw_operating_system"), nvarchar("raw_price"),
+            nvarchar("source_file_name"), new BulkIngestEngine.Column("row_number", Types.INTEGER, 10, 0));
     private final ErrorLogger errorLogger;
 
     public CSVProcessor(String dbUrl, ErrorLogger errorLogger) throws SQLException {
         this.errorLogger = errorLogger;
         try {
-            this.connection = DriverManager.getConnection(dbUrl);
+            this.connection = ConnectionPool.getConnection(dbUrl);
         } catch (SQLException e) {
             errorLogger.logError("Connection", "CONNECTION_ERROR", "Database connection failed: " + e.getMessage(), "N/A", 0);
             throw e;
@@ -33,74 +47,213 @@ public class CSVProcessor implements AutoCloseable {
         int successfulRows = 0;
         int failedRows = 0;
 
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            boolean isFirstLine = true;
-
-            while ((line = br.readLine()) != null) {
-                if (isFirstLine) {
-                    isFirstLine = false;
-                    continue;
-                }
-
-                rowNumber++;
-                String[] values = line.split(",");
-
-                try {
-                    insertToStaging(values, filePath, rowNumber);
-                    successfulRows++;
-                } catch (Exception e) {
-                    failedRows++;
-                    errorLogger.logError("Transform", "ROW_PROCESSING_ERROR", "Error processing row: " + e.getMessage(), filePath, rowNumber);
-                }
+        try (CSVRowReader reader = openReader(filePath)) {
+            if (DatabaseConfig.isBulkIngestEnabled() && BulkIngestEngine.isSqlServer(connection)) {
+                failedRows = bulkLoad(reader, filePath);
+            } else {
+                failedRows = batchLoad(reader, filePath);
             }
+            rowNumber = reader.rowNumber();
+            successfulRows = rowNumber - failedRows;
 
             runStoredProcedures(filePath);
 
             long endTime = System.currentTimeMillis();
             errorLogger.logSummary(filePath, rowNumber, successfulRows, failedRows, endTime - startTime);
         } catch (Exception e) {
+            // Not atomic: rows already committed (every staging.insert.commit.interval rows, or every
+            // staging.bulk.batch.size rows for bulk copy) remain in daily_mobile
             updateFileStatus(filePath, "ER");
             errorLogger.logError("Extract", "FILE_READ_ERROR", "Error reading file: " + e.getMessage(), filePath, 0);
             throw e;
         }
     }
 
-    private void insertToStaging(String[] values, String filePath, int rowNumber) throws SQLException {
-        String query = """
-        INSERT INTO daily_mobile 
-        (raw_name, raw_brand, raw_model, raw_battery_capacity, raw_screen_size, 
-         raw_touchscreen, raw_resolution_x, raw_resolution_y, raw_processor, 
-         raw_ram, raw_internal_storage, raw_rear_camera, raw_front_camera, 
-         raw_operating_system, raw_price, source_file_name, row_number)
-        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-        """;
+    // Follows a file that is still growing. New complete records are committed in micro-batches every
+    // tail.batch.interval.seconds or tail.batch.max.rows rows, together with the byte offset in
+    // daily_mobile_tail_offset, and the staging procedures run after each batch. Stops when interrupted.
+    public void tailCSVToDailyMobile(String filePath) throws Exception {
+        if (CompressedInput.isCompressed(filePath)) {
+            throw new IllegalArgumentException("Tail mode does not support compressed files: " + filePath);
+        }
+        long intervalMs = DatabaseConfig.getTailBatchIntervalSeconds() * 1000L;
+        int maxRows = DatabaseConfig.getTailBatchMaxRows();
+        long pollMs = DatabaseConfig.getTailPollIntervalMs();
+
+        long[] committed = loadTailOffset(filePath);
+        long committedOffset = committed[0];
+        int rowNumber = (int) committed[1];
+        boolean skipHeader = committedOffset == 0;
+        updateFileStatus(filePath, "EX");
+
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        try (GrowingFileReader reader = new GrowingFileReader(filePath, committedOffset)) {
+            while (!Thread.currentThread().isInterrupted()) {
+                long batchStart = System.currentTimeMillis();
+                int batchRows = 0;
+                int batchFailedRows;
+
+                try (DailyMobileBatchWriter writer = new DailyMobileBatchWriter(connection, errorLogger, filePath,
+                        DatabaseConfig.getInsertBatchSize(), Integer.MAX_VALUE)) {
+                    while (batchRows < maxRows && System.currentTimeMillis() - batchStart < intervalMs) {
+                        List<String> records = reader.readCompleteRecords(maxRows - batchRows);
+                        if (records.isEmpty()) {
+                            try {
+                                Thread.sleep(pollMs);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                break;
+                            }
+                            continue;
+                        }
+
+                        for (String record : records) {
+                            if (skipHeader) {
+                                skipHeader = false;
+                                continue;
+                            }
+                            tokenizer.tokenize(record);
+                            writer.add(tokenizer.fields(), ++rowNumber);
+                            batchRows++;
+                        }
+                    }
+
+                    if (reader.offset() == committedOffset) {
+                        continue;
+                    }
+                    writer.flush();
+                    saveTailOffset(filePath, reader.offset(), rowNumber);
+                    writer.finish();
+                    committedOffset = reader.offset();
+                    batchFailedRows = writer.getFailedRows();
+                }
+
+                if (batchRows > 0) {
+                    runStoredProcedures(filePath);
+                    errorLogger.logSummary(filePath, batchRows, batchRows - batchFailedRows, batchFailedRows,
+                            System.currentTimeMillis() - batchStart);
+                }
+            }
+        } catch (Exception e) {
+            updateFileStatus(filePath, "ER");
+            errorLogger.logError("Extract", "FILE_READ_ERROR", "Error following file: " + e.getMessage(), filePath, rowNumber);
+            throw e;
+        }
+    }
 
+    private long[] loadTailOffset(String filePath) throws SQLException {
+        String query = "SELECT byte_offset, row_number FROM daily_mobile_tail_offset WHERE source_file_name = ?";
         try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setString(1, values[0]);   // raw_name
-            stmt.setString(2, values[1]);   // raw_brand
-            stmt.setString(3, values[2]);   // raw_model
-            stmt.setString(4, values[3]);   // raw_battery_capacity
-            stmt.setString(5, values[4]);   // raw_screen_size
-            stmt.setBoolean(6, values[5].equalsIgnoreCase("Yes")); // raw_touchscreen
-            stmt.setString(7, values[6]);   // raw_resolution_x
-            stmt.setString(8, values[7]);   // raw_resolution_y
-            stmt.setString(9, values[8]);   // raw_processor
-            stmt.setString(10, values[9]);  // raw_ram
-            stmt.setString(11, values[10]); // raw_internal_storage
-            stmt.setString(12, values[11]); // raw_rear_camera
-            stmt.setString(13, values[12]); // raw_front_camera
-            stmt.setString(14, values[13]); // raw_operating_system
-            stmt.setString(15, values[14]); // raw_price
-            stmt.setString(16, filePath);   // source_file_name
-            stmt.setInt(17, rowNumber);     // row_number
+            stmt.setString(1, filePath);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return new long[]{rs.getLong("byte_offset"), rs.getInt("row_number")};
+                }
+            }
+        }
+        return new long[]{0, 0};
+    }
+
+    // Runs inside the micro-batch transaction so rows and offset are committed together
+    private void saveTailOffset(String filePath, long offset, int rowNumber) throws SQLException {
+        String update = "UPDATE daily_mobile_tail_offset SET byte_offset = ?, row_number = ?, updated_at = GETDATE() WHERE source_file_name = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(update)) {
+            stmt.setLong(1, offset);
+            stmt.setInt(2, rowNumber);
+            stmt.setString(3, filePath);
+            if (stmt.executeUpdate() > 0) {
+                return;
+            }
+        }
 
+        String insert = "INSERT INTO daily_mobile_tail_offset (source_file_name, byte_offset, row_number, updated_at) VALUES (?, ?, ?, GETDATE())";
+        try (PreparedStatement stmt = connection.prepareStatement(insert)) {
+            stmt.setString(1, filePath);
+            stmt.setLong(2, offset);
+            stmt.setInt(3, rowNumber);
             stmt.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException("Database insertion error: " + e.getMessage());
         }
     }
 
+    private int batchLoad(CSVRowReader reader, String filePath) throws Exception {
+        try (DailyMobileBatchWriter writer = new DailyMobileBatchWriter(connection, errorLogger, filePath,
+                DatabaseConfig.getInsertBatchSize(), DatabaseConfig.getInsertCommitInterval())) {
+            while (reader.next()) {
+                writer.add(reader.values(), reader.rowNumber());
+            }
+            writer.finish();
+            return writer.getFailedRows();
+        }
+    }
+
+    private int bulkLoad(CSVRowReader reader, String filePath) throws Exception {
+        BulkIngestEngine engine = new BulkIngestEngine(connection, "daily_mobile", DAILY_MOBILE_COLUMNS,
+                DatabaseConfig.getBulkBatchSize(), DatabaseConfig.isBulkTableLock());
+        DailyMobileRows rows = new DailyMobileRows(reader, filePath);
+        try {
+            engine.load(rows);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows.failedRows;
+    }
+
+    // Maps reader rows to daily_mobile column values; rows with missing columns are logged and skipped
+    private class DailyMobileRows implements Iterator<Object[]> {
+        private final CSVRowReader reader;
+        private final String filePath;
+        private Object[] next;
+        private int failedRows;
+
+        DailyMobileRows(CSVRowReader reader, String filePath) {
+            this.reader = reader;
+            this.filePath = filePath;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (next == null && reader.next()) {
+                    if (reader.fieldCount() < DAILY_MOBILE_VALUE_COUNT) {
+                        failedRows++;
+                        errorLogger.logError("Transform", "ROW_PROCESSING_ERROR", "Error processing row: expected "
+                                + DAILY_MOBILE_VALUE_COUNT + " values but found " + reader.fieldCount(), filePath, reader.rowNumber());
+                        continue;
+                    }
+                    Object[] row = new Object[DAILY_MOBILE_COLUMNS.size()];
+                    for (int i = 0; i < DAILY_MOBILE_VALUE_COUNT; i++) {
+                        row[i] = reader.field(i);
+                    }
+                    row[5] = reader.field(5).equalsIgnoreCase("Yes"); // raw_touchscreen
+                    row[15] = filePath;
+                    row[16] = reader.rowNumber();
+                    next = row;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return next != null;
+        }
+
+        @Override
+        public Object[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Object[] row = next;
+            next = null;
+            return row;
+        }
+    }
+
+    private CSVRowReader openReader(String filePath) throws IOException {
+        // Compressed files cannot be memory-mapped, they are streamed through the decompression thread
+        if (DatabaseConfig.isParallelParseEnabled() && !CompressedInput.isCompressed(filePath)) {
+            return new MappedCSVReader(filePath, DatabaseConfig.getParseThreads(), DatabaseConfig.getParseChunkSize());
+        }
+        return new LineCSVReader(filePath);
+    }
+
     private void runStoredProcedures(String filePath) throws Exception {
         String[] procedures = {
                 "UpdateDailyMobileStatus",
@@ -0,0 +1,40 @@
+package com.dw;
+
+// Follows CSV quoting byte by byte with the same rules as CSVTokenizer (a quote only opens a field at
+// its start, doubled quotes are escapes), so that readers which split raw bytes can tell a '\n' that
+// ends a record from one inside a quoted field. The bytes it looks at never occur inside a multi-byte
+// UTF-8 sequence. A new scanner must start on a record boundary.
+final class CSVRecordScanner {
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_SEEN = 3;
+
+    private int state = FIELD_START;
+
+    // Returns true when b is the '\n' that ends the current record
+    boolean endsRecord(byte b) {
+        if (state == QUOTED) {
+            if (b == '"') {
+                state = QUOTE_SEEN;
+            }
+            return false;
+        }
+        if (state == QUOTE_SEEN && b == '"') {
+            state = QUOTED;
+            return false;
+        }
+        if (b == '\n') {
+            state = FIELD_START;
+            return true;
+        }
+        if (b == ',' || b == '\r') {
+            state = FIELD_START;
+        } else if (state == FIELD_START && b == '"') {
+            state = QUOTED;
+        } else {
+            state = UNQUOTED;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,23 @@
+package com.dw;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+public interface CSVRowReader extends Closeable {
+    boolean next() throws IOException;
+
+    // 1-based data row number, header line excluded
+    int rowNumber();
+
+    int fieldCount();
+
+    String field(int index);
+
+    default String[] values() {
+        String[] values = new String[fieldCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = field(i);
+        }
+        return values;
+    }
+}
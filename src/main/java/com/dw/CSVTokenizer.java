@@ -0,0 +1,209 @@
+package com.dw;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+// Single-pass, RFC 4180 aware CSV tokenizer. Fields are kept as offsets into a reused char
+// buffer; a String is only created when field(i) is called. Quoted fields may contain commas,
+// doubled quotes and line breaks. Offsets are valid until the next record is read.
+public class CSVTokenizer {
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final Reader in;
+    private char[] buffer;
+    private int recordStart;
+    private int bufferLimit;
+    private boolean eof;
+
+    private char[] fieldChars;
+    private int[] fieldStarts = new int[32];
+    private int[] fieldEnds = new int[32];
+    private boolean[] fieldEscaped = new boolean[32];
+    private int fieldCount;
+
+    public CSVTokenizer(Reader in) {
+        this.in = in;
+        this.buffer = new char[INITIAL_BUFFER_SIZE];
+    }
+
+    // For callers that supply their own records via tokenize(...)
+    public CSVTokenizer() {
+        this.in = null;
+        this.buffer = new char[256];
+    }
+
+    // Reads the next record from the reader; returns false at end of input
+    public boolean nextRecord() throws IOException {
+        while (true) {
+            if (recordStart == bufferLimit && eof) {
+                fieldCount = 0;
+                return false;
+            }
+            if (recordStart < bufferLimit) {
+                int end = tokenize(buffer, recordStart, bufferLimit, eof);
+                if (end >= 0) {
+                    recordStart = end;
+                    return true;
+                }
+            }
+            fill();
+        }
+    }
+
+    private void fill() throws IOException {
+        int remaining = bufferLimit - recordStart;
+        if (recordStart > 0) {
+            System.arraycopy(buffer, recordStart, buffer, 0, remaining);
+        } else if (remaining == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        recordStart = 0;
+        bufferLimit = remaining;
+
+        int read = in.read(buffer, bufferLimit, buffer.length - bufferLimit);
+        if (read < 0) {
+            eof = true;
+        } else {
+            bufferLimit += read;
+        }
+    }
+
+    // Tokenizes a single line that has already been split off (no line terminator expected)
+    public void tokenize(String line) {
+        int length = line.length();
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+        }
+        line.getChars(0, length, buffer, 0);
+        tokenize(buffer, 0, length, true);
+    }
+
+    // Tokenizes the record starting at start. Returns the position just past its line terminator,
+    // or -1 when the record is not complete before limit and more input may follow (!endOfInput).
+    public int tokenize(char[] chars, int start, int limit, boolean endOfInput) {
+        fieldChars = chars;
+        fieldCount = 0;
+        int i = start;
+
+        while (true) {
+            int fieldStart;
+            int fieldEnd;
+            boolean escaped = false;
+
+            if (i < limit && chars[i] == '"') {
+                fieldStart = ++i;
+                while (true) {
+                    if (i >= limit) {
+                        if (!endOfInput) {
+                            return -1;
+                        }
+                        fieldEnd = i;
+                        break;
+                    }
+                    if (chars[i] == '"') {
+                        if (i + 1 < limit && chars[i + 1] == '"') {
+                            escaped = true;
+                            i += 2;
+                            continue;
+                        }
+                        if (i + 1 >= limit && !endOfInput) {
+                            return -1;
+                        }
+                        fieldEnd = i++;
+                        break;
+                    }
+                    i++;
+                }
+                // Lenient: anything between the closing quote and the delimiter is dropped
+                while (i < limit && chars[i] != ',' && chars[i] != '\n' && chars[i] != '\r') {
+                    i++;
+                }
+            } else {
+                fieldStart = i;
+                while (i < limit && chars[i] != ',' && chars[i] != '\n' && chars[i] != '\r') {
+                    i++;
+                }
+                fieldEnd = i;
+            }
+            addField(fieldStart, fieldEnd, escaped);
+
+            if (i >= limit) {
+                return endOfInput ? limit : -1;
+            }
+            char c = chars[i];
+            if (c == ',') {
+                i++;
+                continue;
+            }
+            if (c == '\r') {
+                if (i + 1 < limit) {
+                    if (chars[i + 1] == '\n') {
+                        i++;
+                    }
+                } else if (!endOfInput) {
+                    return -1;
+                }
+            }
+            return i + 1;
+        }
+    }
+
+    private void addField(int start, int end, boolean escaped) {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+            fieldEscaped = Arrays.copyOf(fieldEscaped, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldEscaped[fieldCount] = escaped;
+        fieldCount++;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    public char[] chars() {
+        return fieldChars;
+    }
+
+    public int fieldStart(int index) {
+        return fieldStarts[index];
+    }
+
+    // Exclusive end; for a field with doubled quotes the range still contains both quote chars
+    public int fieldEnd(int index) {
+        return fieldEnds[index];
+    }
+
+    public String field(int index) {
+        if (index >= fieldCount) {
+            throw new ArrayIndexOutOfBoundsException("Index " + index + " out of bounds for length " + fieldCount);
+        }
+        int start = fieldStarts[index];
+        int end = fieldEnds[index];
+        if (!fieldEscaped[index]) {
+            return new String(fieldChars, start, end - start);
+        }
+
+        StringBuilder value = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = fieldChars[i];
+            value.append(c);
+            if (c == '"' && i + 1 < end && fieldChars[i + 1] == '"') {
+                i++;
+            }
+        }
+        return value.toString();
+    }
+
+    public String[] fields() {
+        String[] values = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            values[i] = field(i);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,164 @@
+package com.dw;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+// Opens CSV inputs that may be gzip-compressed (.gz). Decompression runs on its own thread and
+// hands decoded buffers to the reader through a bounded queue, so inflating and parsing overlap.
+public final class CompressedInput {
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final int QUEUE_DEPTH = 8;
+
+    private CompressedInput() {
+    }
+
+    public static boolean isCompressed(String filePath) {
+        return filePath.toLowerCase().endsWith(".gz");
+    }
+
+    public static boolean hasValidHeader(String filePath) throws IOException {
+        try (InputStream in = new FileInputStream(filePath)) {
+            return in.read() == 0x1f && in.read() == 0x8b;
+        }
+    }
+
+    public static InputStream open(String filePath) throws IOException {
+        InputStream in = new FileInputStream(filePath);
+        if (!isCompressed(filePath)) {
+            return in;
+        }
+        try {
+            return new PipelinedInputStream(new GZIPInputStream(in, BUFFER_SIZE), filePath);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    public static Reader openReader(String filePath) throws IOException {
+        return new InputStreamReader(open(filePath), StandardCharsets.UTF_8);
+    }
+
+    // The producer thread owns the source: it is the only thread that reads or closes it, so close()
+    // never closes the inflater while it is in use.
+    private static class PipelinedInputStream extends InputStream {
+        private static final byte[] END = new byte[0];
+
+        private final InputStream source;
+        private final String filePath;
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_DEPTH);
+        private final Thread producer;
+        private volatile IOException failure;
+        private byte[] current = new byte[0];
+        private int position;
+        private boolean finished;
+        private boolean closed;
+
+        PipelinedInputStream(InputStream source, String filePath) {
+            this.source = source;
+            this.filePath = filePath;
+            this.producer = new Thread(this::produce, "decompress-" + filePath);
+            this.producer.setDaemon(true);
+            this.producer.start();
+        }
+
+        private void produce() {
+            try (InputStream in = source) {
+                while (true) {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int filled = in.readNBytes(buffer, 0, BUFFER_SIZE);
+                    if (filled == 0) {
+                        break;
+                    }
+                    queue.put(filled == BUFFER_SIZE ? buffer : Arrays.copyOf(buffer, filled));
+                }
+            } catch (IOException e) {
+                failure = e;
+            } catch (RuntimeException e) {
+                failure = new IOException("Failed to decompress " + filePath, e);
+            } catch (InterruptedException e) {
+                // close() is waiting for this thread; the source is already closed
+                return;
+            }
+            try {
+                queue.put(END);
+            } catch (InterruptedException ignored) {
+            }
+        }
+
+        private boolean nextBuffer() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (finished) {
+                return false;
+            }
+            try {
+                current = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for decompressed data");
+            }
+            position = 0;
+            if (current == END) {
+                finished = true;
+                if (failure != null) {
+                    throw failure;
+                }
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == current.length && !nextBuffer()) {
+                return -1;
+            }
+            return current[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position == current.length && !nextBuffer()) {
+                return -1;
+            }
+            int count = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        // Stops the producer and waits until it has closed the source
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            current = new byte[0];
+            position = 0;
+            producer.interrupt();
+            try {
+                producer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while closing " + filePath);
+            } finally {
+                queue.clear();
+            }
+        }
+    }
+}
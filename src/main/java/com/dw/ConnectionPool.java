@@ -0,0 +1,566 @@
+package com.dw;
+
+import com.microsoft.sqlserver.jdbc.SQLServerStatement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+
+// Small pooled DataSource, one per JDBC URL. Connections handed out are proxies: close() returns
+// the physical connection to the pool, and prepareStatement/prepareCall with plain SQL are served
+// from a per-connection LRU cache, so the same statement is only prepared once per connection.
+// Statements a borrower leaves open are closed (or checked back in) when the connection is returned,
+// as closing a physical connection would have done.
+// Connections are validated on borrow, and ones held longer than pool.leak.detection.ms are
+// reported together with the stack trace of the code that borrowed them.
+public class ConnectionPool implements DataSource, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+    private static final Map<String, ConnectionPool> POOLS = new ConcurrentHashMap<>();
+    private static volatile Properties settings = new Properties();
+
+    public record Stats(String url, int active, int idle, int waiting, long borrowCount, long createdCount,
+                        long totalWaitMs, long maxWaitMs, long statementCacheHits, long statementCacheMisses,
+                        long leaksDetected) {
+        public double averageWaitMs() {
+            return borrowCount == 0 ? 0 : (double) totalWaitMs / borrowCount;
+        }
+    }
+
+    private final String url;
+    private final int maxSize;
+    private final long maxWaitMs;
+    private final int validationTimeoutSeconds;
+    private final long leakDetectionMs;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PhysicalConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService leakDetector;
+    private volatile boolean closed;
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+
+    public ConnectionPool(String url, int maxSize, long maxWaitMs, int validationTimeoutSeconds,
+                          long leakDetectionMs, int statementCacheSize) {
+        this.url = url;
+        this.maxSize = maxSize;
+        this.maxWaitMs = maxWaitMs;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.leakDetectionMs = leakDetectionMs;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        if (leakDetectionMs > 0) {
+            long period = Math.max(1000, leakDetectionMs / 2);
+            leakDetector = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "connection-leak-detector");
+                thread.setDaemon(true);
+                return thread;
+            });
+            leakDetector.scheduleAtFixedRate(this::detectLeaks, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            leakDetector = null;
+        }
+    }
+
+    // Settings for pools created after this call. Each entry point passes the properties it loaded
+    // (pool.max.size, pool.max.wait.ms, pool.validation.timeout.seconds, pool.leak.detection.ms
+    // where 0 disables leak detection, pool.statement.cache.size); pools that already exist keep their size.
+    public static void configure(Properties properties) {
+        settings = (Properties) properties.clone();
+    }
+
+    // Shared pool for a URL, sized from the last configure() call
+    public static ConnectionPool forUrl(String url) {
+        Properties props = settings;
+        return POOLS.computeIfAbsent(url, key -> new ConnectionPool(key,
+                getInt(props, "pool.max.size", 16), getInt(props, "pool.max.wait.ms", 30000),
+                getInt(props, "pool.validation.timeout.seconds", 5), getInt(props, "pool.leak.detection.ms", 0),
+                getInt(props, "pool.statement.cache.size", 64)));
+    }
+
+    private static int getInt(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    // Drop-in replacement for DriverManager.getConnection(url)
+    public static Connection getConnection(String url) throws SQLException {
+        return forUrl(url).getConnection();
+    }
+
+    public static List<Stats> allStats() {
+        List<Stats> stats = new ArrayList<>();
+        for (ConnectionPool pool : POOLS.values()) {
+            stats.add(pool.stats());
+        }
+        return stats;
+    }
+
+    public static void closeAll() {
+        for (Iterator<ConnectionPool> it = POOLS.values().iterator(); it.hasNext(); ) {
+            ConnectionPool pool = it.next();
+            it.remove();
+            logger.info("Connection pool statistics: {}", pool.stats());
+            pool.close();
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed: " + url);
+        }
+        long waitStart = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + maxWaitMs + " ms waiting for a connection to " + url
+                        + " (active=" + borrowed.size() + ", max=" + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection to " + url, e);
+        }
+
+        try {
+            PhysicalConnection physical = takeValidConnection();
+            long waited = System.nanoTime() - waitStart;
+            borrowCount.incrementAndGet();
+            totalWaitNanos.addAndGet(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+            PooledConnection pooled = new PooledConnection(physical);
+            borrowed.add(pooled);
+            return pooled.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PhysicalConnection takeValidConnection() throws SQLException {
+        PhysicalConnection physical;
+        while ((physical = idle.pollFirst()) != null) {
+            if (isUsable(physical.connection)) {
+                return physical;
+            }
+            physical.closeQuietly();
+        }
+        createdCount.incrementAndGet();
+        return new PhysicalConnection(DriverManager.getConnection(url));
+    }
+
+    private boolean isUsable(Connection connection) {
+        try {
+            return connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void giveBack(PooledConnection pooled) {
+        if (!borrowed.remove(pooled)) {
+            return;
+        }
+        PhysicalConnection physical = pooled.physical;
+        pooled.closeStatements();
+        try {
+            // Leave the session the way DriverManager would have handed it out
+            if (!physical.connection.isClosed() && !physical.connection.getAutoCommit()) {
+                physical.connection.rollback();
+                physical.connection.setAutoCommit(true);
+            }
+            if (closed || physical.connection.isClosed()) {
+                physical.closeQuietly();
+            } else {
+                idle.offerFirst(physical);
+            }
+        } catch (SQLException e) {
+            physical.closeQuietly();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void detectLeaks() {
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooled : borrowed) {
+            if (!pooled.leakReported && now - pooled.borrowedAt > leakDetectionMs) {
+                pooled.leakReported = true;
+                leaksDetected.incrementAndGet();
+                logger.warn("Possible connection leak: connection to {} held for {} ms", url,
+                        now - pooled.borrowedAt, pooled.borrowTrace);
+            }
+        }
+    }
+
+    public Stats stats() {
+        int active = borrowed.size();
+        return new Stats(url, active, idle.size(), permits.getQueueLength(), borrowCount.get(), createdCount.get(),
+                TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get()), TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()),
+                statementCacheHits.get(), statementCacheMisses.get(), leaksDetected.get());
+    }
+
+    // Closes idle connections; borrowed ones are closed when they are given back
+    @Override
+    public void close() {
+        closed = true;
+        if (leakDetector != null) {
+            leakDetector.shutdownNow();
+        }
+        PhysicalConnection physical;
+        while ((physical = idle.pollFirst()) != null) {
+            physical.closeQuietly();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Credentials are part of the pooled JDBC URL");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    // A physical connection and its statement cache; both outlive individual borrows
+    private class PhysicalConnection {
+        final Connection connection;
+        final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= statementCacheSize) {
+                    return false;
+                }
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+
+        PhysicalConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        PreparedStatement prepare(String key, Method method, Object[] args, Object owner) throws Throwable {
+            CachedStatement cached = statements.get(key);
+            if (cached != null && !cached.inUse && !cached.statement.isClosed()) {
+                statementCacheHits.incrementAndGet();
+                return cached.checkOut(owner);
+            }
+            statementCacheMisses.incrementAndGet();
+            PreparedStatement statement = (PreparedStatement) invoke(method, connection, args);
+            if (cached != null && cached.inUse) {
+                // Same SQL already open on this connection: hand out an uncached statement
+                return statement;
+            }
+            cached = new CachedStatement(statement);
+            statements.put(key, cached);
+            return cached.checkOut(owner);
+        }
+
+        void closeQuietly() {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    // A prepared statement kept open on its physical connection between checkouts. Settings a caller
+    // may change (fetch size, query timeout, max rows, SQL Server response buffering) are put back to
+    // the values the statement was created with when it is checked in.
+    private static class CachedStatement {
+        final PreparedStatement statement;
+        final Class<?> type;
+        final int defaultFetchSize;
+        final int defaultQueryTimeout;
+        final int defaultMaxRows;
+        final String defaultResponseBuffering;
+        boolean inUse;
+        boolean evicted;
+
+        CachedStatement(PreparedStatement statement) throws SQLException {
+            this.statement = statement;
+            this.type = statement instanceof CallableStatement ? CallableStatement.class : PreparedStatement.class;
+            this.defaultFetchSize = statement.getFetchSize();
+            this.defaultQueryTimeout = statement.getQueryTimeout();
+            this.defaultMaxRows = statement.getMaxRows();
+            this.defaultResponseBuffering = statement.isWrapperFor(SQLServerStatement.class)
+                    ? statement.unwrap(SQLServerStatement.class).getResponseBuffering() : null;
+        }
+
+        // Every checkout gets its own proxy, so a reference kept after close() cannot reach the next user
+        PreparedStatement checkOut(Object owner) {
+            inUse = true;
+            return new StatementCheckout(this, owner).proxy;
+        }
+
+        void checkIn() throws SQLException {
+            inUse = false;
+            if (evicted) {
+                statement.close();
+                return;
+            }
+            try {
+                statement.clearParameters();
+                statement.clearBatch();
+                // Max rows first: some drivers reject a fetch size above the current max rows
+                if (statement.getMaxRows() != defaultMaxRows) {
+                    statement.setMaxRows(defaultMaxRows);
+                }
+                if (statement.getFetchSize() != defaultFetchSize) {
+                    statement.setFetchSize(defaultFetchSize);
+                }
+                if (statement.getQueryTimeout() != defaultQueryTimeout) {
+                    statement.setQueryTimeout(defaultQueryTimeout);
+                }
+                if (defaultResponseBuffering != null) {
+                    statement.unwrap(SQLServerStatement.class).setResponseBuffering(defaultResponseBuffering);
+                }
+            } catch (SQLException e) {
+                // Could not reset: do not hand the statement out again
+                evicted = true;
+                statement.close();
+                throw e;
+            }
+        }
+
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                try {
+                    statement.close();
+                } catch (SQLException ignored) {
+                }
+            }
+        }
+    }
+
+    // One checkout of a cached statement. close() closes the result sets it produced and checks the
+    // statement back in; the proxy is unusable afterwards.
+    private static class StatementCheckout implements InvocationHandler {
+        final CachedStatement cached;
+        final Object owner;
+        final PreparedStatement proxy;
+        private final List<ResultSet> results = new ArrayList<>();
+        private boolean closed;
+
+        StatementCheckout(CachedStatement cached, Object owner) {
+            this.cached = cached;
+            this.owner = owner;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{cached.type}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!closed) {
+                        closed = true;
+                        try {
+                            for (ResultSet rs : results) {
+                                rs.close();
+                            }
+                        } finally {
+                            results.clear();
+                            cached.checkIn();
+                        }
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed || cached.statement.isClosed();
+                }
+                case "getConnection" -> {
+                    return owner;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Cached[" + cached.statement + "]";
+                }
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+            Object result = ConnectionPool.invoke(method, cached.statement, args);
+            if (result instanceof ResultSet rs) {
+                results.removeIf(StatementCheckout::isClosedQuietly);
+                results.add(rs);
+            }
+            return result;
+        }
+
+        private static boolean isClosedQuietly(ResultSet rs) {
+            try {
+                return rs.isClosed();
+            } catch (SQLException e) {
+                return true;
+            }
+        }
+    }
+
+    // One borrow of a physical connection; the proxy is unusable once closed
+    private class PooledConnection implements InvocationHandler {
+        final PhysicalConnection physical;
+        final Connection proxy;
+        final long borrowedAt = System.currentTimeMillis();
+        final Exception borrowTrace;
+        volatile boolean leakReported;
+        private boolean returned;
+        // Statements handed out during this borrow, closed on return if the caller did not
+        private final List<Statement> statements = new ArrayList<>();
+
+        PooledConnection(PhysicalConnection physical) {
+            this.physical = physical;
+            this.proxy = (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, this);
+            this.borrowTrace = leakDetectionMs > 0 ? new Exception("Connection borrowed here") : null;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close" -> {
+                    if (!returned) {
+                        returned = true;
+                        giveBack(this);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return returned || physical.connection.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled[" + physical.connection + "]";
+                }
+            }
+            if (returned) {
+                throw new SQLException("Connection is closed");
+            }
+
+            Class<?>[] types = method.getParameterTypes();
+            if (statementCacheSize > 0 && (name.equals("prepareStatement") || name.equals("prepareCall"))
+                    && types.length >= 1 && types.length <= 2 && (types.length == 1 || types[1] == int.class)) {
+                String key = name + (types.length == 2 ? "#" + args[1] : "") + ":" + args[0];
+                return track(physical.prepare(key, method, args, proxy));
+            }
+            Object result = ConnectionPool.invoke(method, physical.connection, args);
+            if (result instanceof Statement statement) {
+                track(statement);
+            }
+            return result;
+        }
+
+        private Statement track(Statement statement) {
+            statements.removeIf(PooledConnection::isClosedQuietly);
+            statements.add(statement);
+            return statement;
+        }
+
+        void closeStatements() {
+            for (Statement statement : statements) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    logger.debug("Failed to close a statement left open on {}", url, e);
+                }
+            }
+            statements.clear();
+        }
+
+        private static boolean isClosedQuietly(Statement statement) {
+            try {
+                return statement.isClosed();
+            } catch (SQLException e) {
+                return true;
+            }
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
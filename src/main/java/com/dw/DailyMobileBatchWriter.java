@@ -0,0 +1,162 @@
+package com.dw;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Inserts daily_mobile rows through one prepared statement per file using JDBC batches.
+// Rows that fail (while binding or inside a batch) are reported to ErrorLogger with their row_number.
+// A file is not loaded atomically: every commitInterval rows are committed, and those rows stay in
+// daily_mobile if the file fails later. Only the rows since the last commit are rolled back on close().
+public class DailyMobileBatchWriter implements AutoCloseable {
+    static final String INSERT_SQL = """
+        INSERT INTO daily_mobile
+        (raw_name, raw_brand, raw_model, raw_battery_capacity, raw_screen_size,
+         raw_touchscreen, raw_resolution_x, raw_resolution_y, raw_processor,
+         raw_ram, raw_internal_storage, raw_rear_camera, raw_front_camera,
+         raw_operating_system, raw_price, source_file_name, row_number)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+
+    private final Connection connection;
+    private final ErrorLogger errorLogger;
+    private final String filePath;
+    private final int batchSize;
+    private final int commitInterval;
+    private final boolean previousAutoCommit;
+    private final PreparedStatement stmt;
+
+    // Rows of the current batch, kept so failures can be mapped back and the rest re-sent
+    private final String[][] pendingValues;
+    private final int[] pendingRows;
+    private int pendingCount;
+
+    private int rowsSinceCommit;
+    private int failedRows;
+    private boolean finished;
+
+    public DailyMobileBatchWriter(Connection connection, ErrorLogger errorLogger, String filePath,
+                                  int batchSize, int commitInterval) throws SQLException {
+        this.connection = connection;
+        this.errorLogger = errorLogger;
+        this.filePath = filePath;
+        this.batchSize = batchSize;
+        this.commitInterval = commitInterval;
+        this.pendingValues = new String[batchSize][];
+        this.pendingRows = new int[batchSize];
+        this.previousAutoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        this.stmt = connection.prepareStatement(INSERT_SQL);
+    }
+
+    public void add(String[] values, int rowNumber) throws SQLException {
+        try {
+            bind(values, rowNumber);
+        } catch (RuntimeException e) {
+            rowFailed(rowNumber, e.getMessage());
+            return;
+        }
+        stmt.addBatch();
+        pendingValues[pendingCount] = values;
+        pendingRows[pendingCount] = rowNumber;
+        pendingCount++;
+
+        if (pendingCount == batchSize) {
+            flush();
+        }
+        if (++rowsSinceCommit >= commitInterval) {
+            flush();
+            connection.commit();
+            rowsSinceCommit = 0;
+        }
+    }
+
+    private void bind(String[] values, int rowNumber) throws SQLException {
+        stmt.setString(1, values[0]);   // raw_name
+        stmt.setString(2, values[1]);   // raw_brand
+        stmt.setString(3, values[2]);   // raw_model
+        stmt.setString(4, values[3]);   // raw_battery_capacity
+        stmt.setString(5, values[4]);   // raw_screen_size
+        stmt.setBoolean(6, values[5].equalsIgnoreCase("Yes")); // raw_touchscreen
+        stmt.setString(7, values[6]);   // raw_resolution_x
+        stmt.setString(8, values[7]);   // raw_resolution_y
+        stmt.setString(9, values[8]);   // raw_processor
+        stmt.setString(10, values[9]);  // raw_ram
+        stmt.setString(11, values[10]); // raw_internal_storage
+        stmt.setString(12, values[11]); // raw_rear_camera
+        stmt.setString(13, values[12]); // raw_front_camera
+        stmt.setString(14, values[13]); // raw_operating_system
+        stmt.setString(15, values[14]); // raw_price
+        stmt.setString(16, filePath);   // source_file_name
+        stmt.setInt(17, rowNumber);     // row_number
+    }
+
+    public void flush() throws SQLException {
+        if (pendingCount == 0) {
+            return;
+        }
+
+        int sent = pendingCount;
+        try {
+            stmt.executeBatch();
+            pendingCount = 0;
+        } catch (BatchUpdateException e) {
+            stmt.clearBatch();
+            int[] counts = e.getUpdateCounts();
+            for (int i = 0; i < counts.length && i < sent; i++) {
+                if (counts[i] == Statement.EXECUTE_FAILED) {
+                    rowFailed(pendingRows[i], "Database insertion error: " + e.getMessage());
+                }
+            }
+            pendingCount = 0;
+            // The driver stopped at the first failure: that row failed, the rest were never sent
+            if (counts.length < sent) {
+                rowFailed(pendingRows[counts.length], "Database insertion error: " + e.getMessage());
+                resend(counts.length + 1, sent);
+            }
+        }
+    }
+
+    private void resend(int from, int to) throws SQLException {
+        for (int i = from; i < to; i++) {
+            String[] values = pendingValues[i];
+            int rowNumber = pendingRows[i];
+            bind(values, rowNumber);
+            stmt.addBatch();
+            pendingValues[pendingCount] = values;
+            pendingRows[pendingCount] = rowNumber;
+            pendingCount++;
+        }
+        flush();
+    }
+
+    private void rowFailed(int rowNumber, String message) {
+        failedRows++;
+        errorLogger.logError("Transform", "ROW_PROCESSING_ERROR", "Error processing row: " + message, filePath, rowNumber);
+    }
+
+    public void finish() throws SQLException {
+        flush();
+        connection.commit();
+        finished = true;
+    }
+
+    public int getFailedRows() {
+        return failedRows;
+    }
+
+    // Without finish(), rolls back the rows added since the last commit-interval boundary
+    @Override
+    public void close() throws SQLException {
+        try {
+            stmt.close();
+            if (!finished) {
+                connection.rollback();
+            }
+        } finally {
+            connection.setAutoCommit(previousAutoCommit);
+        }
+    }
+}
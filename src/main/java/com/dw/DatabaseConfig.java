@@ -1,5 +1,6 @@
 package com.dw;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.sql.*;
 import java.util.Properties;
@@ -7,10 +8,17 @@ import java.util.Properties;
 public class DatabaseConfig {
     private static Properties properties = new Properties();
 
+    // Falls back to the shared config.properties (or -Detl.config) when filePath does not exist,
+    // so MainApp and the ETL entry points can run from the same file
     public static void loadFromFile(String filePath) throws Exception {
-        try (var fis = new FileInputStream(filePath)) {
+        File file = new File(filePath);
+        if (!file.exists()) {
+            file = new File(System.getProperty("etl.config", "config.properties"));
+        }
+        try (var fis = new FileInputStream(file)) {
             properties.load(fis);
         }
+        ConnectionPool.configure(properties);
     }
 
     public static String getWarehouseDbUrl() {
@@ -24,5 +32,92 @@ public class DatabaseConfig {
     public static String getControlDbUrl() {
         return properties.getProperty("control.db.url");
     }
-}
 
+    public static boolean isParallelParseEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("csv.parse.parallel", "false"));
+    }
+
+    public static int getParseThreads() {
+        return getInt("csv.parse.threads", Runtime.getRuntime().availableProcessors());
+    }
+
+    public static int getParseChunkSize() {
+        return getInt("csv.parse.chunk.size", 8 * 1024 * 1024);
+    }
+
+    public static int getInsertBatchSize() {
+        return getInt("staging.insert.batch.size", 1000);
+    }
+
+    public static int getInsertCommitInterval() {
+        return getInt("staging.insert.commit.interval", 10000);
+    }
+
+    public static boolean isBulkIngestEnabled() {
+        return "bulk".equalsIgnoreCase(properties.getProperty("staging.ingest.mode", "batch"));
+    }
+
+    public static int getBulkBatchSize() {
+        return getInt("staging.bulk.batch.size", 10000);
+    }
+
+    public static boolean isBulkTableLock() {
+        return Boolean.parseBoolean(properties.getProperty("staging.bulk.table.lock", "true"));
+    }
+
+    public static int getTailBatchIntervalSeconds() {
+        return getInt("tail.batch.interval.seconds", 5);
+    }
+
+    public static int getTailBatchMaxRows() {
+        return getInt("tail.batch.max.rows", 10000);
+    }
+
+    public static int getTailPollIntervalMs() {
+        return getInt("tail.poll.interval.ms", 500);
+    }
+
+    // Number of pending files processed at the same time; 1 keeps the sequential loop
+    public static int getFileConcurrency() {
+        return Math.max(1, getInt("etl.file.concurrency", 1));
+    }
+
+    // Opt-in: off by default, so each error is written on the caller's thread as before
+    public static boolean isErrorLogAsync() {
+        return Boolean.parseBoolean(properties.getProperty("error.log.async", "false"));
+    }
+
+    public static int getErrorLogQueueCapacity() {
+        return getInt("error.log.queue.capacity", 10000);
+    }
+
+    public static int getErrorLogBatchSize() {
+        return Math.max(1, getInt("error.log.batch.size", 500));
+    }
+
+    public static long getErrorLogFlushIntervalMs() {
+        return getInt("error.log.flush.interval.ms", 1000);
+    }
+
+    public static ErrorLogger.OverflowPolicy getErrorLogOverflowPolicy() {
+        return ErrorLogger.OverflowPolicy.valueOf(properties.getProperty("error.log.overflow.policy", "DROP").trim().toUpperCase());
+    }
+
+    // Opt-in: off by default, so every error row is written to error_log
+    public static boolean isErrorLogAggregate() {
+        return Boolean.parseBoolean(properties.getProperty("error.log.aggregate", "false"));
+    }
+
+    public static int getErrorLogExamplesPerKey() {
+        return getInt("error.log.examples.per.key", 20);
+    }
+
+    public static int getErrorLogSampleSize() {
+        return getInt("error.log.sample.size", 20);
+    }
+
+    private static int getInt(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+}
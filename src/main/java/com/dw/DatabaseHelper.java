@@ -15,7 +15,7 @@ public class DatabaseHelper implements AutoCloseable {
     }
 
     private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(dbUrl);
+        return ConnectionPool.getConnection(dbUrl);
     }
 
     public List<FileConfig> getPendingFileConfigs() throws SQLException {
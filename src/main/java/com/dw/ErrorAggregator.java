@@ -0,0 +1,96 @@
+package com.dw;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Caps how many rows one kind of error can write. Errors are grouped by (phase, errorType,
+// sourceFile): the first examplesPerKey of a group are written as they happen, later ones only
+// update a count and row range and may replace an entry in a fixed-size reservoir sample. When the
+// file is finished, drain() returns the sample plus one summary entry per group that was cut short.
+class ErrorAggregator {
+    private record Key(String phase, String errorType, String sourceFile) {
+    }
+
+    private static class Aggregate {
+        long count;
+        long suppressed;
+        int minRow = Integer.MAX_VALUE;
+        int maxRow = Integer.MIN_VALUE;
+        final List<ErrorLogger.ErrorEntry> sample = new ArrayList<>();
+    }
+
+    private final int examplesPerKey;
+    private final int sampleSize;
+    private final Map<Key, Aggregate> aggregates = new ConcurrentHashMap<>();
+
+    ErrorAggregator(int examplesPerKey, int sampleSize) {
+        this.examplesPerKey = examplesPerKey;
+        this.sampleSize = sampleSize;
+    }
+
+    // Returns true when the error should be written now
+    boolean record(ErrorLogger.ErrorEntry entry) {
+        Key key = new Key(entry.phase(), entry.errorType(), entry.sourceFile());
+        Aggregate aggregate = aggregates.computeIfAbsent(key, k -> new Aggregate());
+        synchronized (aggregate) {
+            aggregate.count++;
+            aggregate.minRow = Math.min(aggregate.minRow, entry.rowNumber());
+            aggregate.maxRow = Math.max(aggregate.maxRow, entry.rowNumber());
+            if (aggregate.count <= examplesPerKey) {
+                return true;
+            }
+
+            // Reservoir sampling (algorithm R) over the errors past the first examples
+            long seen = ++aggregate.suppressed;
+            if (aggregate.sample.size() < sampleSize) {
+                aggregate.sample.add(entry);
+            } else if (sampleSize > 0) {
+                long slot = ThreadLocalRandom.current().nextLong(seen);
+                if (slot < sampleSize) {
+                    aggregate.sample.set((int) slot, entry);
+                }
+            }
+            return false;
+        }
+    }
+
+    // Sampled and summary entries for one file; its groups are reset
+    List<ErrorLogger.ErrorEntry> drain(String sourceFile) {
+        return drain(sourceFile, false);
+    }
+
+    List<ErrorLogger.ErrorEntry> drainAll() {
+        return drain(null, true);
+    }
+
+    private List<ErrorLogger.ErrorEntry> drain(String sourceFile, boolean all) {
+        List<ErrorLogger.ErrorEntry> entries = new ArrayList<>();
+        for (Iterator<Map.Entry<Key, Aggregate>> it = aggregates.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Key, Aggregate> group = it.next();
+            Key key = group.getKey();
+            if (!all && (sourceFile == null ? key.sourceFile() != null : !sourceFile.equals(key.sourceFile()))) {
+                continue;
+            }
+            it.remove();
+
+            Aggregate aggregate = group.getValue();
+            synchronized (aggregate) {
+                if (aggregate.suppressed == 0) {
+                    continue;
+                }
+                entries.addAll(aggregate.sample);
+                String message = String.format(
+                        "%d occurrences on rows %d-%d: first %d logged individually, %d sampled, %d not logged",
+                        aggregate.count, aggregate.minRow, aggregate.maxRow, examplesPerKey,
+                        aggregate.sample.size(), aggregate.suppressed - aggregate.sample.size());
+                entries.add(new ErrorLogger.ErrorEntry(key.phase(), key.errorType() + "_SUMMARY", message,
+                        key.sourceFile(), 0));
+            }
+        }
+        return entries;
+    }
+}
@@ -1,25 +1,188 @@
 package com.dw;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
+// Shared by every file task, so calls on the single connection are serialized. A lock is used
+// instead of synchronized so virtual threads waiting on JDBC I/O do not pin their carrier.
+// Both modes below are opt-in and off by default.
+// In async mode (error.log.async=true) logError only enqueues; a background writer sends the
+// queued errors to sp_insert_error_log as one JDBC batch per error.log.batch.size entries or
+// error.log.flush.interval.ms, whichever comes first. close() flushes whatever is still queued.
+// With error.log.aggregate=true repeated errors are capped per (phase, errorType, sourceFile) by
+// an ErrorAggregator; the samples and a summary row are written with the file's logSummary.
 public class ErrorLogger implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ErrorLogger.class);
+    private static final String INSERT_ERROR_SQL = "{call staging.dbo.sp_insert_error_log(?, ?, ?, ?, ?)}";
+
+    // What logError does when the async queue is full
+    public enum OverflowPolicy {
+        DROP,   // discard the error and count it; the caller never waits
+        BLOCK,  // wait for room in the queue
+        SYNC    // write the error on the caller's thread
+    }
+
+    record ErrorEntry(String phase, String errorType, String errorMessage, String sourceFile, int rowNumber) {
+    }
+
+    private static final ErrorEntry END = new ErrorEntry(null, null, null, null, 0);
+
     private final Connection connection;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ErrorAggregator aggregator;
+
+    private final BlockingQueue<ErrorEntry> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final Thread writer;
+    private final AtomicLong droppedErrors = new AtomicLong();
+    private volatile boolean closed;
 
     public ErrorLogger(String dbUrl) throws SQLException {
-        this.connection = DriverManager.getConnection(dbUrl);
+        this.connection = ConnectionPool.getConnection(dbUrl);
+        this.aggregator = DatabaseConfig.isErrorLogAggregate()
+                ? new ErrorAggregator(DatabaseConfig.getErrorLogExamplesPerKey(), DatabaseConfig.getErrorLogSampleSize())
+                : null;
+        if (DatabaseConfig.isErrorLogAsync()) {
+            this.queue = new ArrayBlockingQueue<>(DatabaseConfig.getErrorLogQueueCapacity());
+            this.overflowPolicy = DatabaseConfig.getErrorLogOverflowPolicy();
+            this.batchSize = DatabaseConfig.getErrorLogBatchSize();
+            this.flushIntervalMs = DatabaseConfig.getErrorLogFlushIntervalMs();
+            this.writer = new Thread(this::runWriter, "error-log-writer");
+            this.writer.setDaemon(true);
+            this.writer.start();
+        } else {
+            this.queue = null;
+            this.overflowPolicy = null;
+            this.batchSize = 0;
+            this.flushIntervalMs = 0;
+            this.writer = null;
+        }
     }
 
     public void logError(String phase, String errorType, String errorMessage, String sourceFile, int rowNumber) {
-        String storedProc = "{call staging.dbo.sp_insert_error_log(?, ?, ?, ?, ?)}";
-        try (CallableStatement stmt = connection.prepareCall(storedProc)) {
-            stmt.setString(1, phase);
-            stmt.setString(2, errorType);
-            stmt.setString(3, errorMessage);
-            stmt.setString(4, sourceFile);
-            stmt.setInt(5, rowNumber);
-            stmt.execute();
+        ErrorEntry entry = new ErrorEntry(phase, errorType, errorMessage, sourceFile, rowNumber);
+        if (aggregator != null && !aggregator.record(entry)) {
+            return;
+        }
+        submit(entry);
+    }
+
+    private void submit(ErrorEntry entry) {
+        if (queue == null) {
+            writeErrors(List.of(entry));
+            return;
+        }
+        if (closed) {
+            droppedErrors.incrementAndGet();
+            return;
+        }
+        if (queue.offer(entry)) {
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case DROP -> droppedErrors.incrementAndGet();
+            case BLOCK -> {
+                try {
+                    queue.put(entry);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    droppedErrors.incrementAndGet();
+                }
+            }
+            case SYNC -> writeErrors(List.of(entry));
+        }
+    }
+
+    private void runWriter() {
+        List<ErrorEntry> batch = new ArrayList<>(batchSize);
+        long nextFlush = System.currentTimeMillis() + flushIntervalMs;
+        boolean end = false;
+
+        while (!end) {
+            try {
+                ErrorEntry entry = queue.poll(Math.max(1, nextFlush - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (entry == END) {
+                    end = true;
+                } else if (entry != null) {
+                    batch.add(entry);
+                }
+            } catch (InterruptedException e) {
+                end = true;
+            }
+            // Pick up everything already queued, up to a full batch
+            while (!end && batch.size() < batchSize) {
+                ErrorEntry entry = queue.poll();
+                if (entry == null) {
+                    break;
+                }
+                if (entry == END) {
+                    end = true;
+                } else {
+                    batch.add(entry);
+                }
+            }
+
+            if (end) {
+                // Anything still queued after END was enqueued before close() returned
+                for (ErrorEntry entry; (entry = queue.poll()) != null; ) {
+                    if (entry != END) {
+                        batch.add(entry);
+                    }
+                }
+            }
+            if (batch.size() >= batchSize || System.currentTimeMillis() >= nextFlush || end) {
+                flushBatch(batch);
+                nextFlush = System.currentTimeMillis() + flushIntervalMs;
+            }
+        }
+    }
+
+    private void flushBatch(List<ErrorEntry> batch) {
+        for (int start = 0; start < batch.size(); start += batchSize) {
+            try {
+                writeErrors(batch.subList(start, Math.min(batch.size(), start + batchSize)));
+            } catch (RuntimeException e) {
+                // Nobody is waiting on this thread to rethrow to; report and keep the writer alive
+                logger.error("Failed to write {} queued errors to the error log", Math.min(batchSize, batch.size() - start), e);
+            }
+        }
+        batch.clear();
+    }
+
+    private void writeErrors(List<ErrorEntry> entries) {
+        lock.lock();
+        try (CallableStatement stmt = connection.prepareCall(INSERT_ERROR_SQL)) {
+            for (ErrorEntry entry : entries) {
+                stmt.setString(1, entry.phase());
+                stmt.setString(2, entry.errorType());
+                stmt.setString(3, entry.errorMessage());
+                stmt.setString(4, entry.sourceFile());
+                stmt.setInt(5, entry.rowNumber());
+                if (entries.size() == 1) {
+                    stmt.execute();
+                } else {
+                    stmt.addBatch();
+                }
+            }
+            if (entries.size() > 1) {
+                stmt.executeBatch();
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to log error to database", e);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -30,6 +193,12 @@ public class ErrorLogger implements AutoCloseable {
         (FileName, TotalRows, SuccessfulRows, FailedRows, ProcessingTime, ProcessedDate)
         VALUES (?, ?, ?, ?, ?, GETDATE())
     """;
+        if (aggregator != null) {
+            for (ErrorEntry entry : aggregator.drain(filePath)) {
+                submit(entry);
+            }
+        }
+        lock.lock();
         try (PreparedStatement stmt = connection.prepareStatement(query)) {
             stmt.setString(1, filePath);
             stmt.setInt(2, totalRows);
@@ -39,14 +208,56 @@ public class ErrorLogger implements AutoCloseable {
             stmt.executeUpdate();
         } catch (SQLException e) {
             throw new RuntimeException("Failed to log processing summary", e);
+        } finally {
+            lock.unlock();
         }
     }
 
+    public long getDroppedErrors() {
+        return droppedErrors.get();
+    }
+
 
+    // Tail mode is stopped by interrupting its thread, so close() often runs with the interrupt flag set.
+    // The flag is cleared until the writer has drained the queue and exited, then restored; the
+    // connection is only closed once nothing else can be using it.
     @Override
     public void close() throws SQLException {
-        if (connection != null && !connection.isClosed()) {
-            connection.close();
+        boolean interrupted = Thread.interrupted();
+        try {
+            if (aggregator != null && !closed) {
+                for (ErrorEntry entry : aggregator.drainAll()) {
+                    submit(entry);
+                }
+            }
+            if (writer != null && !closed) {
+                closed = true;
+                while (true) {
+                    try {
+                        queue.put(END);
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                while (writer.isAlive()) {
+                    try {
+                        writer.join();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (droppedErrors.get() > 0) {
+                    logger.warn("{} errors were dropped because the error log queue was full", droppedErrors.get());
+                }
+            }
+            if (connection != null && !connection.isClosed()) {
+                connection.close();
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 }
@@ -0,0 +1,99 @@
+package com.dw;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// Follows a file that is still being appended to. Only complete records are returned: a record
+// ends at a '\n' outside quoted fields, so a quoted field may span lines as it can for
+// LineCSVReader. offset() is the byte position just past the last record handed out.
+public class GrowingFileReader implements Closeable {
+    private static final int READ_SIZE = 1024 * 1024;
+
+    private record Record(String text, long endOffset) {
+    }
+
+    private final String filePath;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private final ByteArrayOutputStream partial = new ByteArrayOutputStream();
+    private final Deque<Record> ready = new ArrayDeque<>();
+    private final CSVRecordScanner scanner = new CSVRecordScanner();
+    private long readPosition;
+    private long offset;
+
+    public GrowingFileReader(String filePath, long startOffset) throws IOException {
+        this.filePath = filePath;
+        this.channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ);
+        this.readPosition = startOffset;
+        this.offset = startOffset;
+    }
+
+    public List<String> readCompleteRecords(int maxRecords) throws IOException {
+        if (ready.isEmpty()) {
+            fill();
+        }
+
+        List<String> records = new ArrayList<>();
+        while (!ready.isEmpty() && records.size() < maxRecords) {
+            Record record = ready.poll();
+            records.add(record.text());
+            offset = record.endOffset();
+        }
+        return records;
+    }
+
+    private void fill() throws IOException {
+        long size = channel.size();
+        if (size < readPosition) {
+            throw new IOException("File was truncated while being followed: " + filePath);
+        }
+
+        long limit = Math.min(size, readPosition + READ_SIZE);
+        while (readPosition < limit) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), limit - readPosition));
+            int read = channel.read(buffer, readPosition);
+            if (read <= 0) {
+                break;
+            }
+
+            byte[] bytes = buffer.array();
+            int segmentStart = 0;
+            for (int i = 0; i < read; i++) {
+                if (scanner.endsRecord(bytes[i])) {
+                    partial.write(bytes, segmentStart, i - segmentStart);
+                    ready.add(new Record(decodeRecord(), readPosition + i + 1));
+                    segmentStart = i + 1;
+                }
+            }
+            partial.write(bytes, segmentStart, read - segmentStart);
+            readPosition += read;
+        }
+    }
+
+    private String decodeRecord() {
+        byte[] bytes = partial.toByteArray();
+        partial.reset();
+        int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    public long offset() {
+        return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,52 @@
+package com.dw;
+
+import java.io.IOException;
+import java.io.Reader;
+
+public class LineCSVReader implements CSVRowReader {
+    private final Reader reader;
+    private final CSVTokenizer tokenizer;
+    private boolean headerSkipped;
+    private int rowNumber;
+
+    public LineCSVReader(String filePath) throws IOException {
+        this.reader = CompressedInput.openReader(filePath);
+        this.tokenizer = new CSVTokenizer(reader);
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        if (!headerSkipped) {
+            headerSkipped = true;
+            if (!tokenizer.nextRecord()) {
+                return false;
+            }
+        }
+
+        if (!tokenizer.nextRecord()) {
+            return false;
+        }
+        rowNumber++;
+        return true;
+    }
+
+    @Override
+    public int rowNumber() {
+        return rowNumber;
+    }
+
+    @Override
+    public int fieldCount() {
+        return tokenizer.fieldCount();
+    }
+
+    @Override
+    public String field(int index) {
+        return tokenizer.field(index);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -6,6 +6,9 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 public class MainApp {
     private static final Logger logger = LoggerFactory.getLogger(MainApp.class);
@@ -15,6 +18,7 @@ public class MainApp {
     private static final String STATUS_ERROR = "ER";
 
     public static void main(String[] args) {
+        ErrorLogger errorLogger = null;
         try {
             // Load configuration
             String configFilePath = System.getProperty("user.dir") + "/db-config.properties";
@@ -26,7 +30,13 @@ public class MainApp {
             String stagingDbUrl = DatabaseConfig.getStagingDbUrl();
 
             // Error logger
-            ErrorLogger errorLogger = new ErrorLogger(stagingDbUrl);
+            errorLogger = new ErrorLogger(stagingDbUrl);
+
+            // Tail mode: java MainApp tail <csv file>
+            if (args.length == 2 && "tail".equals(args[0])) {
+                tailFile(args[1], stagingDbUrl, errorLogger);
+                return;
+            }
 
             // Use try-with-resources to ensure proper resource management
             try (DatabaseHelper dbHelper = new DatabaseHelper(controlDbUrl)) {
@@ -38,13 +48,27 @@ public class MainApp {
                     return;
                 }
 
-                // Process each file
-                for (FileConfig fileConfig : pendingFiles) {
-                    processFile(dbHelper, fileConfig, stagingDbUrl, warehouseDbUrl, errorLogger);
+                int concurrency = DatabaseConfig.getFileConcurrency();
+                if (concurrency > 1 && pendingFiles.size() > 1) {
+                    processFilesConcurrently(pendingFiles, concurrency, controlDbUrl, stagingDbUrl, warehouseDbUrl, errorLogger);
+                } else {
+                    // Process each file
+                    for (FileConfig fileConfig : pendingFiles) {
+                        processFile(dbHelper, fileConfig, stagingDbUrl, warehouseDbUrl, errorLogger);
+                    }
                 }
             }
         } catch (Exception e) {
             logger.error("Critical error in main application", e);
+        } finally {
+            if (errorLogger != null) {
+                try {
+                    errorLogger.close();
+                } catch (SQLException e) {
+                    logger.warn("Failed to close error logger", e);
+                }
+            }
+            ConnectionPool.closeAll();
         }
     }
 
@@ -73,6 +97,53 @@ public class MainApp {
         }
     }
 
+    // One virtual thread per file, at most `concurrency` running at once. Each file gets its own
+    // DatabaseHelper so its EX/TR/LD/ER transitions never share a connection with another file.
+    private static void processFilesConcurrently(List<FileConfig> pendingFiles, int concurrency, String controlDbUrl,
+                                                 String stagingDbUrl, String warehouseDbUrl, ErrorLogger errorLogger) {
+        logger.info("Processing {} files with concurrency {}", pendingFiles.size(), concurrency);
+        Semaphore permits = new Semaphore(concurrency);
+
+        // close() waits for every submitted file to finish
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (FileConfig fileConfig : pendingFiles) {
+                executor.submit(() -> {
+                    try {
+                        permits.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    try (DatabaseHelper fileDbHelper = new DatabaseHelper(controlDbUrl)) {
+                        processFile(fileDbHelper, fileConfig, stagingDbUrl, warehouseDbUrl, errorLogger);
+                    } catch (Exception e) {
+                        logger.error("Failed to open control database for file: {}", fileConfig.getConfigValue(), e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+    }
+
+    private static void tailFile(String filePath, String stagingDbUrl, ErrorLogger errorLogger) throws Exception {
+        Thread tailThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            // Let the current micro-batch commit before the JVM exits
+            tailThread.interrupt();
+            try {
+                tailThread.join();
+            } catch (InterruptedException ignored) {
+            }
+        }));
+
+        logger.info("Following file: {}", filePath);
+        try (CSVProcessor csvProcessor = new CSVProcessor(stagingDbUrl, errorLogger)) {
+            csvProcessor.tailCSVToDailyMobile(filePath);
+        }
+        logger.info("Stopped following file: {}", filePath);
+    }
+
     private static void validateFile(String filePath, String configKey, DatabaseHelper dbHelper, ErrorLogger errorLogger) throws Exception {
         File file = new File(filePath);
         if (!file.exists() || !file.canRead()) {
@@ -80,6 +151,11 @@ public class MainApp {
             errorLogger.logError("Validation", "FileError", errorMessage, filePath, 0);
             throw new Exception(errorMessage);
         }
+        if (CompressedInput.isCompressed(filePath) && !CompressedInput.hasValidHeader(filePath)) {
+            String errorMessage = "File is not a valid gzip archive: " + filePath;
+            errorLogger.logError("Validation", "FileError", errorMessage, filePath, 0);
+            throw new Exception(errorMessage);
+        }
     }
 
     private static void extractData(String filePath, String stagingDbUrl, String configKey,
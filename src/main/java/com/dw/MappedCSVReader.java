@@ -0,0 +1,180 @@
+package com.dw;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Memory-maps the file in chunks, each cut at the first '\n' after chunkSize bytes and mapped once,
+// and parses them on a fork-join pool. Chunks are consumed in file order, so row numbers match
+// LineCSVReader. Every chunk is parsed as if it started on a record boundary; when the cut falls
+// inside a quoted field, that chunk hands back its unfinished record and the reading thread parses
+// it again together with the next chunk, whose own parse is discarded. Only those chunks are
+// parsed serially.
+public class MappedCSVReader implements CSVRowReader {
+    private static final int BOUNDARY_SCAN_SIZE = 64 * 1024;
+
+    // Records parsed from one chunk; tail is a record left unfinished at the end of the chunk
+    private record Chunk(MappedByteBuffer buffer, boolean last, List<String[]> rows, String tail) {
+    }
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int chunkSize;
+    private final int maxChunksInFlight;
+    private final ForkJoinPool pool;
+    private final Deque<ForkJoinTask<Chunk>> pending = new ArrayDeque<>();
+
+    private long nextChunkStart;
+    private boolean started;
+    private boolean headerSkipped;
+    private String carry;
+    private List<String[]> currentChunk = List.of();
+    private int indexInChunk;
+    private int rowNumber;
+    private String[] values;
+
+    public MappedCSVReader(String filePath, int parallelism, int chunkSize) throws IOException {
+        this.channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.chunkSize = chunkSize;
+        this.maxChunksInFlight = parallelism * 2;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        if (!started) {
+            started = true;
+            fillPipeline();
+        }
+
+        while (true) {
+            while (indexInChunk >= currentChunk.size()) {
+                ForkJoinTask<Chunk> task = pending.pollFirst();
+                if (task == null) {
+                    values = null;
+                    return false;
+                }
+                currentChunk = rowsOf(task.join());
+                indexInChunk = 0;
+                fillPipeline();
+            }
+
+            values = currentChunk.get(indexInChunk++);
+            if (!headerSkipped) {
+                headerSkipped = true;
+                continue;
+            }
+            rowNumber++;
+            return true;
+        }
+    }
+
+    // A chunk that follows an unfinished record did not start on a record boundary, so its own parse
+    // is replaced by parsing the unfinished record and the chunk together
+    private List<String[]> rowsOf(Chunk chunk) {
+        if (carry == null) {
+            carry = chunk.tail();
+            return chunk.rows();
+        }
+        Chunk joined = parse(chunk.buffer(), carry, chunk.last());
+        carry = joined.tail();
+        return joined.rows();
+    }
+
+    private void fillPipeline() throws IOException {
+        while (pending.size() < maxChunksInFlight && nextChunkStart < fileSize) {
+            MappedByteBuffer buffer = mapChunk(nextChunkStart);
+            nextChunkStart += buffer.limit();
+            boolean last = nextChunkStart == fileSize;
+            pending.addLast(pool.submit(() -> parse(buffer, null, last)));
+        }
+    }
+
+    // Maps chunkSize bytes plus room to find the next '\n', and returns the chunk as a slice of that
+    // mapping ending just past the '\n' (or at the end of the file)
+    private MappedByteBuffer mapChunk(long start) throws IOException {
+        long target = Math.min(start + chunkSize, fileSize);
+        long room = BOUNDARY_SCAN_SIZE;
+        while (true) {
+            long end = Math.min(fileSize, target + room);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            for (int i = (int) (target - start); i < mapped.limit(); i++) {
+                if (mapped.get(i) == '\n') {
+                    return mapped.slice(0, i + 1);
+                }
+            }
+            if (end == fileSize) {
+                return mapped;
+            }
+            // A line longer than the extra room: map again with more
+            room *= 2;
+        }
+    }
+
+    private static Chunk parse(MappedByteBuffer buffer, String carry, boolean last) {
+        CharBuffer decoded = StandardCharsets.UTF_8.decode(buffer.duplicate());
+        char[] chars;
+        int position;
+        int limit;
+        if (carry == null) {
+            chars = decoded.array();
+            position = decoded.arrayOffset();
+            limit = position + decoded.limit();
+        } else {
+            chars = (carry + decoded).toCharArray();
+            position = 0;
+            limit = chars.length;
+        }
+
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        List<String[]> rows = new ArrayList<>();
+        while (position < limit) {
+            int end = tokenizer.tokenize(chars, position, limit, last);
+            if (end < 0) {
+                return new Chunk(buffer, last, rows, new String(chars, position, limit - position));
+            }
+            rows.add(tokenizer.fields());
+            position = end;
+        }
+        return new Chunk(buffer, last, rows, null);
+    }
+
+    @Override
+    public int rowNumber() {
+        return rowNumber;
+    }
+
+    @Override
+    public int fieldCount() {
+        return values.length;
+    }
+
+    @Override
+    public String field(int index) {
+        return values[index];
+    }
+
+    @Override
+    public String[] values() {
+        return values;
+    }
+
+    @Override
+    public void close() throws IOException {
+        pending.forEach(task -> task.cancel(true));
+        pending.clear();
+        pool.shutdownNow();
+        channel.close();
+    }
+}
@@ -1,19 +1,61 @@
 package thu3.ca2.nhom3;
 
+import com.dw.BulkIngestEngine;
+import com.dw.CompressedInput;
+import com.dw.ConnectionPool;
+import com.dw.CSVTokenizer;
 import com.opencsv.CSVReader;
 import com.opencsv.exceptions.CsvException;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.sql.*;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Properties;
 
 public class CSVLoader {
-	private static final String CONFIG_FILE = "config.properties";
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+	private static final int UPSERT_BATCH_SIZE = 500;
+	private static final int MAX_REPORTED_INVALID_RECORDS = 10;
+	// Chèn dữ liệu mới
+	static final String INSERT_STAGING_SQL = "INSERT INTO staging_mobile (" +
+			"name, brand, model, battery_capacity, screen_size, touchscreen, resolution_x, resolution_y, " +
+			"processor, ram, internal_storage, rear_camera, front_camera, operating_system, price, loaded_date) " +
+			"VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, GETDATE())";
+	// Cột của bảng staging theo thứ tự trong file CSV, với kiểu thật để bulk copy không phải đổi kiểu từ chuỗi
+	private static final List<BulkIngestEngine.Column> LOAD_CSV_COLUMNS = List.of(
+			new BulkIngestEngine.Column("id", Types.INTEGER, 10, 0),
+			BulkIngestEngine.Column.nvarchar("name"),
+			BulkIngestEngine.Column.nvarchar("brand"),
+			BulkIngestEngine.Column.nvarchar("model"),
+			new BulkIngestEngine.Column("battery_capacity", Types.INTEGER, 10, 0),
+			new BulkIngestEngine.Column("screen_size", Types.DOUBLE, 15, 0),
+			BulkIngestEngine.Column.bit("touchscreen"),
+			new BulkIngestEngine.Column("resolution_x", Types.INTEGER, 10, 0),
+			new BulkIngestEngine.Column("resolution_y", Types.INTEGER, 10, 0),
+			BulkIngestEngine.Column.nvarchar("processor"),
+			new BulkIngestEngine.Column("ram", Types.INTEGER, 10, 0),
+			new BulkIngestEngine.Column("internal_storage", Types.INTEGER, 10, 0),
+			BulkIngestEngine.Column.nvarchar("rear_camera"),
+			BulkIngestEngine.Column.nvarchar("front_camera"),
+			BulkIngestEngine.Column.nvarchar("operating_system"),
+			new BulkIngestEngine.Column("price", Types.DOUBLE, 15, 0),
+			new BulkIngestEngine.Column("loaded_date", Types.TIMESTAMP, 23, 3));
 	private String csvFilePath;
 	private String stagingDbUrl;
+	private boolean streamingEnabled;
+	private boolean bulkIngestEnabled;
+	private int bulkBatchSize;
+	private boolean bulkTableLock;
+	private boolean indexEnabled;
+	private long indexMemoryBudgetMb;
+	private boolean mergeUpsertEnabled;
+	private int invalidRecords;
 
 	public CSVLoader() {
 		loadConfigurations();
@@ -21,10 +63,18 @@ public class CSVLoader {
 
 	private void loadConfigurations() {
 		Properties props = new Properties();
-		try (FileReader reader = new FileReader(CONFIG_FILE)) {
+		try (FileReader reader = new FileReader(System.getProperty("etl.config", "config.properties"))) {
 			props.load(reader);
+			ConnectionPool.configure(props);
 			csvFilePath = props.getProperty("csv.file.path");
 			stagingDbUrl = props.getProperty("staging.db.url");
+			streamingEnabled = Boolean.parseBoolean(props.getProperty("csv.load.streaming", "true"));
+			bulkIngestEnabled = "bulk".equalsIgnoreCase(props.getProperty("staging.ingest.mode", "batch"));
+			bulkBatchSize = Integer.parseInt(props.getProperty("staging.bulk.batch.size", "10000"));
+			bulkTableLock = Boolean.parseBoolean(props.getProperty("staging.bulk.table.lock", "true"));
+			indexEnabled = Boolean.parseBoolean(props.getProperty("staging.index.enable", "true"));
+			indexMemoryBudgetMb = Long.parseLong(props.getProperty("staging.index.memory.budget.mb", "256"));
+			mergeUpsertEnabled = "merge".equalsIgnoreCase(props.getProperty("staging.upsert.engine", "row"));
 		} catch (IOException e) {
 			throw new RuntimeException("Failed to load configuration file", e);
 		}
@@ -32,22 +82,29 @@ public class CSVLoader {
 
 	public int loadCSVToStaging() {
 		int recordsLoaded = 0;
-		try (CSVReader reader = new CSVReader(new FileReader(csvFilePath));
-			 Connection conn = DriverManager.getConnection(stagingDbUrl)) {
+		invalidRecords = 0;
+		try (CSVReader reader = new CSVReader(new BufferedReader(CompressedInput.openReader(csvFilePath), READ_BUFFER_SIZE));
+			 Connection conn = ConnectionPool.getConnection(stagingDbUrl)) {
 
-			List<String[]> records = reader.readAll();
-			records.remove(0); // Bỏ qua hàng tiêu đề
+			// Streaming: đọc từng bản ghi qua reader, bộ nhớ chỉ giữ một batch
+			Iterable<String[]> records;
+			if (streamingEnabled) {
+				reader.skip(1); // Bỏ qua hàng tiêu đề
+				records = reader;
+			} else {
+				List<String[]> allRecords = reader.readAll();
+				allRecords.remove(0); // Bỏ qua hàng tiêu đề
+				records = allRecords;
+			}
+
+			if (mergeUpsertEnabled) {
+				return upsertWithMerge(records, conn);
+			}
 
 			// Kiểm tra nếu dòng đã tồn tại
 			String selectSql = "SELECT id, price FROM staging_mobile " +
 					"WHERE name = ? AND brand = ? AND model = ?";
 
-			// Chèn dữ liệu mới
-			String insertSql = "INSERT INTO staging_mobile (" +
-					"name, brand, model, battery_capacity, screen_size, touchscreen, resolution_x, resolution_y, " +
-					"processor, ram, internal_storage, rear_camera, front_camera, operating_system, price, loaded_date) " +
-					"VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, GETDATE())";
-
 			// Cập nhật giá nếu khác nhau
 			String updateSql = "UPDATE staging_mobile SET price = ?, last_updated = GETDATE() WHERE id = ?";
 
@@ -56,75 +113,113 @@ public class CSVLoader {
 					"VALUES (?, ?, ?, GETDATE())";
 
 			try (PreparedStatement selectStmt = conn.prepareStatement(selectSql);
-				 PreparedStatement insertStmt = conn.prepareStatement(insertSql);
+				 PreparedStatement insertStmt = conn.prepareStatement(INSERT_STAGING_SQL);
 				 PreparedStatement updateStmt = conn.prepareStatement(updateSql);
 				 PreparedStatement logStmt = conn.prepareStatement(logSql)) {
 
-				int batchSize = 500;
+				int batchSize = UPSERT_BATCH_SIZE;
 				int batchCount = 0;
+				StagingMobileIndex index = indexEnabled ? StagingMobileIndex.load(conn, indexMemoryBudgetMb * 1024 * 1024) : null;
+
+				MobileRecordDecoder decoder = new MobileRecordDecoder();
 
 				for (String[] record : records) {
-					try {
-						String name = record[0];
-						String brand = record[1];
-						String model = record[2];
-						double price = Double.parseDouble(record[14]);
+					int status = decoder.decode(record);
+					if ((status & MobileRecordDecoder.REJECTED) != 0) {
+						reportInvalidRecord(record, status);
+						continue;
+					}
+					String name = record[0];
+					String brand = record[1];
+					String model = record[2];
+					double price = decoder.price;
 
-						// Kiểm tra nếu dữ liệu đã tồn tại
+					// Kiểm tra nếu dữ liệu đã tồn tại: tra chỉ mục trong bộ nhớ, hoặc SELECT nếu không có chỉ mục
+					int slot = -1;
+					boolean exists = false;
+					int id = 0;
+					double oldPrice = 0;
+					if (index != null) {
+						slot = index.slotOf(name, brand, model);
+						if (slot >= 0 && index.isPending(slot)) {
+							// Dòng được thêm trước đó trong file này: đẩy batch để lấy id
+							insertStmt.executeBatch();
+							updateStmt.executeBatch();
+							logStmt.executeBatch();
+							batchCount = 0;
+							if (!index.resolve(slot, selectStmt, name, brand, model)) {
+								slot = -1;
+							}
+						}
+						if (slot >= 0) {
+							exists = true;
+							id = index.id(slot);
+							oldPrice = index.price(slot);
+						}
+					} else {
 						selectStmt.setString(1, name);
 						selectStmt.setString(2, brand);
 						selectStmt.setString(3, model);
+						try (ResultSet rs = selectStmt.executeQuery()) {
+							if (rs.next()) {
+								exists = true;
+								id = rs.getInt("id");
+								oldPrice = rs.getDouble("price");
+							}
+						}
+					}
 
-						ResultSet rs = selectStmt.executeQuery();
-						if (rs.next()) {
-							int id = rs.getInt("id");
-							double oldPrice = rs.getDouble("price");
-
-							// Nếu giá thay đổi, cập nhật và ghi log
-							if (oldPrice != price) {
-								updateStmt.setDouble(1, price);
-								updateStmt.setInt(2, id);
-								updateStmt.addBatch();
+					if (exists) {
+						// Nếu giá thay đổi, cập nhật và ghi log
+						if (oldPrice != price) {
+							updateStmt.setDouble(1, price);
+							updateStmt.setInt(2, id);
+							updateStmt.addBatch();
 
-								logStmt.setInt(1, id);
-								logStmt.setDouble(2, oldPrice);
-								logStmt.setDouble(3, price);
-								logStmt.addBatch();
+							logStmt.setInt(1, id);
+							logStmt.setDouble(2, oldPrice);
+							logStmt.setDouble(3, price);
+							logStmt.addBatch();
 
-								batchCount++;
+							if (index != null) {
+								index.updatePrice(slot, price);
 							}
-						} else {
-							// Thêm dữ liệu mới
-							insertStmt.setString(1, name);
-							insertStmt.setString(2, brand);
-							insertStmt.setString(3, model);
-							insertStmt.setInt(4, Integer.parseInt(record[3])); // battery_capacity
-							insertStmt.setDouble(5, Double.parseDouble(record[4])); // screen_size
-							insertStmt.setBoolean(6, Boolean.parseBoolean(record[5])); // touchscreen
-							insertStmt.setInt(7, Integer.parseInt(record[6])); // resolution_x
-							insertStmt.setInt(8, Integer.parseInt(record[7])); // resolution_y
-							insertStmt.setString(9, record[8]); // processor
-							insertStmt.setInt(10, Integer.parseInt(record[9])); // ram
-							insertStmt.setInt(11, Integer.parseInt(record[10])); // internal_storage
-							insertStmt.setString(12, record[11]); // rear_camera
-							insertStmt.setString(13, record[12]); // front_camera
-							insertStmt.setString(14, record[13]); // operating_system
-							insertStmt.setDouble(15, price); // price
-
-							insertStmt.addBatch();
-							recordsLoaded++;
 							batchCount++;
 						}
+					} else if (status != MobileRecordDecoder.OK) {
+						// Dòng mới nhưng có cột số không hợp lệ: không thêm vào
+						reportInvalidRecord(record, status);
+					} else {
+						// Thêm dữ liệu mới
+						insertStmt.setString(1, name);
+						insertStmt.setString(2, brand);
+						insertStmt.setString(3, model);
+						insertStmt.setInt(4, decoder.batteryCapacity); // battery_capacity
+						insertStmt.setDouble(5, decoder.screenSize); // screen_size
+						insertStmt.setBoolean(6, decoder.touchscreen); // touchscreen
+						insertStmt.setInt(7, decoder.resolutionX); // resolution_x
+						insertStmt.setInt(8, decoder.resolutionY); // resolution_y
+						insertStmt.setString(9, record[8]); // processor
+						insertStmt.setInt(10, decoder.ram); // ram
+						insertStmt.setInt(11, decoder.internalStorage); // internal_storage
+						insertStmt.setString(12, record[11]); // rear_camera
+						insertStmt.setString(13, record[12]); // front_camera
+						insertStmt.setString(14, record[13]); // operating_system
+						insertStmt.setDouble(15, price); // price
 
-						if (batchCount % batchSize == 0) {
-							insertStmt.executeBatch();
-							updateStmt.executeBatch();
-							logStmt.executeBatch();
-							batchCount = 0;
+						insertStmt.addBatch();
+						if (index != null) {
+							index.addPending(name, brand, model, price);
 						}
-					} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
-						System.err.println("Error parsing record: " + String.join(", ", record));
-						e.printStackTrace();
+						recordsLoaded++;
+						batchCount++;
+					}
+
+					if (batchCount % batchSize == 0) {
+						insertStmt.executeBatch();
+						updateStmt.executeBatch();
+						logStmt.executeBatch();
+						batchCount = 0;
 					}
 				}
 
@@ -135,32 +230,125 @@ public class CSVLoader {
 			}
 		} catch (IOException | CsvException | SQLException e) {
 			e.printStackTrace();
+		} finally {
+			if (invalidRecords > MAX_REPORTED_INVALID_RECORDS) {
+				System.err.println("Skipped " + invalidRecords + " invalid records in total ("
+						+ (invalidRecords - MAX_REPORTED_INVALID_RECORDS) + " not printed)");
+			}
 		}
 		return recordsLoaded;
 	}
+
+	// Chỉ in chi tiết vài bản ghi đầu tiên, phần còn lại chỉ đếm
+	private void reportInvalidRecord(String[] record, int status) {
+		if (++invalidRecords <= MAX_REPORTED_INVALID_RECORDS) {
+			System.err.println("Error parsing record (" + MobileRecordDecoder.describe(status) + "): " + String.join(", ", record));
+		}
+	}
+
+	// Mỗi lô UPSERT_BATCH_SIZE dòng chỉ cần một lần bulk copy và một câu MERGE
+	private int upsertWithMerge(Iterable<String[]> records, Connection conn) throws SQLException {
+		int recordsLoaded = 0;
+		MobileRecordDecoder decoder = new MobileRecordDecoder();
+		try (StagingMobileMergeUpserter upserter = new StagingMobileMergeUpserter(conn, UPSERT_BATCH_SIZE)) {
+			for (String[] record : records) {
+				int status = decoder.decode(record);
+				if ((status & MobileRecordDecoder.REJECTED) != 0) {
+					reportInvalidRecord(record, status);
+					continue;
+				}
+				recordsLoaded += upserter.add(record, decoder, status == MobileRecordDecoder.OK);
+			}
+			recordsLoaded += upserter.flush();
+		}
+		return recordsLoaded;
+	}
+
 	private int recordsProcessed = 0;
 
 	public void loadCSV(String filePath, String tableName) throws Exception {
-		try (BufferedReader br = new BufferedReader(new FileReader(filePath));
-			 Connection connection = DriverManager.getConnection(stagingDbUrl)) {
-			String line;
+		if (bulkIngestEnabled) {
+			loadCSVBulk(filePath, tableName);
+			return;
+		}
+
+		try (Reader reader = CompressedInput.openReader(filePath);
+			 Connection connection = ConnectionPool.getConnection(stagingDbUrl)) {
+			CSVTokenizer tokenizer = new CSVTokenizer(reader);
 			String sql = "INSERT INTO " + tableName + " (id, name, brand, model, battery_capacity, screen_size, " +
 					"touchscreen, resolution_x, resolution_y, processor, ram, internal_storage, rear_camera, " +
 					"front_camera, operating_system, price, loaded_date) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
-			PreparedStatement preparedStatement = connection.prepareStatement(sql);
+			try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+				tokenizer.nextRecord(); // Bỏ qua hàng tiêu đề
+				while (tokenizer.nextRecord()) {
+					for (int i = 0; i < tokenizer.fieldCount(); i++) {
+						preparedStatement.setString(i + 1, tokenizer.field(i));
+					}
+					preparedStatement.addBatch();
+					recordsProcessed++;
+				}
 
-			while ((line = br.readLine()) != null) {
-				String[] values = line.split(",");
-				for (int i = 0; i < values.length; i++) {
-					preparedStatement.setString(i + 1, values[i]);
+				preparedStatement.executeBatch();
+			}
+		}
+	}
+
+	// Bulk copy trên SQL Server, batch INSERT với các database khác
+	private void loadCSVBulk(String filePath, String tableName) throws Exception {
+		try (Reader reader = CompressedInput.openReader(filePath);
+			 Connection connection = ConnectionPool.getConnection(stagingDbUrl)) {
+			CSVTokenizer tokenizer = new CSVTokenizer(reader);
+			tokenizer.nextRecord(); // Bỏ qua hàng tiêu đề
+			BulkIngestEngine engine = new BulkIngestEngine(connection, tableName, LOAD_CSV_COLUMNS, bulkBatchSize, bulkTableLock);
+			recordsProcessed += (int) engine.load(recordIterator(tokenizer));
+		}
+	}
+
+	private static Iterator<Object[]> recordIterator(CSVTokenizer tokenizer) {
+		return new Iterator<>() {
+			private Boolean hasNext;
+
+			@Override
+			public boolean hasNext() {
+				if (hasNext == null) {
+					try {
+						hasNext = tokenizer.nextRecord();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+				return hasNext;
+			}
+
+			@Override
+			public Object[] next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				hasNext = null;
+				Object[] row = new Object[LOAD_CSV_COLUMNS.size()];
+				for (int i = 0; i < row.length && i < tokenizer.fieldCount(); i++) {
+					row[i] = columnValue(tokenizer.field(i), LOAD_CSV_COLUMNS.get(i).sqlType());
 				}
-				preparedStatement.addBatch();
-				recordsProcessed++;
+				return row;
 			}
+		};
+	}
 
-			preparedStatement.executeBatch();
+	// Ô rỗng thành NULL; giá trị sai định dạng làm dừng việc load như khi database tự đổi kiểu
+	private static Object columnValue(String value, int sqlType) {
+		if (value == null || value.isBlank()) {
+			return sqlType == Types.NVARCHAR ? value : null;
 		}
+		String trimmed = value.trim();
+		return switch (sqlType) {
+			case Types.INTEGER -> Integer.parseInt(trimmed);
+			case Types.DOUBLE -> Double.parseDouble(trimmed);
+			case Types.BIT -> trimmed.equals("1") || Boolean.parseBoolean(trimmed);
+			case Types.TIMESTAMP -> Timestamp.valueOf(trimmed.replace('T', ' '));
+			default -> value;
+		};
 	}
 
 	public int getRecordsProcessed() {
@@ -1,13 +1,60 @@
 package thu3.ca2.nhom3;
 
+import com.dw.ConnectionPool;
+
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DataTransformer {
+    // Cột tra khóa của mỗi bảng chiều là cột mà loadFactPhone dùng khi tìm khóa
+    private static final DimensionLoader BRAND_LOADER = new DimensionLoader("DimBrand", "BrandKey", "BrandName",
+            new String[]{"BrandName"}, new int[]{Types.NVARCHAR});
+    private static final DimensionLoader MODEL_LOADER = new DimensionLoader("DimModel", "ModelKey", "ModelName",
+            new String[]{"ModelName", "BrandKey"}, new int[]{Types.NVARCHAR, Types.INTEGER});
+    private static final DimensionLoader SPECIFICATION_LOADER = new DimensionLoader("DimSpecification", "SpecKey", "ScreenSize",
+            new String[]{"BatteryCapacity", "ScreenSize", "Touchscreen", "ResolutionX", "ResolutionY", "RAM", "InternalStorage"},
+            new int[]{Types.INTEGER, Types.DOUBLE, Types.BIT, Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.INTEGER});
+    private static final DimensionLoader PROCESSOR_LOADER = new DimensionLoader("DimProcessor", "ProcessorKey", "ProcessorName",
+            new String[]{"ProcessorName"}, new int[]{Types.NVARCHAR});
+    private static final DimensionLoader CAMERA_LOADER = new DimensionLoader("DimCamera", "CameraKey", "RearCamera",
+            new String[]{"RearCamera", "FrontCamera"}, new int[]{Types.NVARCHAR, Types.NVARCHAR});
+    private static final DimensionLoader OS_LOADER = new DimensionLoader("DimOS", "OSKey", "OSName",
+            new String[]{"OSName"}, new int[]{Types.NVARCHAR});
+
     private String stagingDbUrl;
     private String warehouseDbUrl;
+    private boolean keyCacheEnabled;
+    private int keyCacheMaxEntries;
+    private int factBatchSize;
+    private int factParallelism;
+    private int factPartitionMaxAttempts;
+    private long factPartitionRetryDelayMs;
+    private boolean pipelineEnabled;
+    private int pipelineWriters;
+    private int pipelineQueueCapacity;
+    private int pipelineChunkSize;
+    private int pipelineFetchSize;
+    private int dimensionParallelism;
+    private boolean dimensionFailFast;
+    private DimensionKeyCache keyCache;
+    private boolean incrementalEnabled;
+    private boolean fullRebuild;
+    private WatermarkStore watermarks;
+    private Map<String, StagingWindow> windows = Map.of();
 
     public DataTransformer() {
         loadConfig();
@@ -15,194 +62,504 @@ public class DataTransformer {
 
     private void loadConfig() {
         Properties properties = new Properties();
-        try (FileInputStream fis = new FileInputStream("config.properties")) {
+        try (FileInputStream fis = new FileInputStream(System.getProperty("etl.config", "config.properties"))) {
             properties.load(fis);
+            ConnectionPool.configure(properties);
             stagingDbUrl = properties.getProperty("staging.db.url");
             warehouseDbUrl = properties.getProperty("warehouse.db.url");
+            incrementalEnabled = Boolean.parseBoolean(properties.getProperty("transform.incremental.enable", "false"));
+            fullRebuild = Boolean.parseBoolean(properties.getProperty("transform.full.rebuild", "false"));
+            if (incrementalEnabled) {
+                watermarks = new WatermarkStore(properties.getProperty("control.db.url"));
+            }
+            keyCacheEnabled = Boolean.parseBoolean(properties.getProperty("transform.dim.cache.enable", "true"));
+            keyCacheMaxEntries = Integer.parseInt(properties.getProperty("transform.dim.cache.max.entries", "1000000"));
+            factBatchSize = Integer.parseInt(properties.getProperty("transform.fact.batch.size", "5000"));
+            factParallelism = Math.max(1, Integer.parseInt(properties.getProperty("transform.fact.parallelism", "1")));
+            factPartitionMaxAttempts = Math.max(1, Integer.parseInt(properties.getProperty("transform.fact.partition.max.attempts", "3")));
+            factPartitionRetryDelayMs = Long.parseLong(properties.getProperty("transform.fact.partition.retry.delay.ms", "2000"));
+            pipelineEnabled = Boolean.parseBoolean(properties.getProperty("transform.pipeline.enable", "false"));
+            pipelineWriters = Integer.parseInt(properties.getProperty("transform.pipeline.writers", "2"));
+            pipelineQueueCapacity = Integer.parseInt(properties.getProperty("transform.pipeline.queue.capacity", "8"));
+            pipelineChunkSize = Integer.parseInt(properties.getProperty("transform.pipeline.chunk.size", "1000"));
+            pipelineFetchSize = Integer.parseInt(properties.getProperty("transform.pipeline.fetch.size", "5000"));
+            dimensionParallelism = Math.max(1, Integer.parseInt(properties.getProperty("transform.dimension.parallelism", "1")));
+            dimensionFailFast = !"CONTINUE".equalsIgnoreCase(properties.getProperty("transform.dimension.failure.policy", "FAIL_FAST"));
         } catch (IOException e) {
             System.err.println("Error loading config.properties: " + e.getMessage());
             throw new RuntimeException("Failed to load database configuration", e);
         }
     }
 
+    // Bỏ qua mốc high-water và xử lý lại toàn bộ staging_mobile trong lần chạy tới
+    public void setFullRebuild(boolean fullRebuild) {
+        this.fullRebuild = fullRebuild;
+    }
+
     public int transformData() {
         int recordsTransformed = 0;
+        keyCache = null; // Mỗi lần chạy nạp lại khóa từ warehouse
 
-        try (Connection stagingConn = DriverManager.getConnection(stagingDbUrl);
-             Connection warehouseConn = DriverManager.getConnection(warehouseDbUrl)) {
+        try (Connection stagingConn = ConnectionPool.getConnection(stagingDbUrl);
+             Connection warehouseConn = ConnectionPool.getConnection(warehouseDbUrl)) {
 
-            recordsTransformed += loadDimBrand(stagingConn, warehouseConn);
-            recordsTransformed += loadDimModel(stagingConn, warehouseConn);
-            recordsTransformed += loadDimSpecification(stagingConn, warehouseConn);
-            recordsTransformed += loadDimProcessor(stagingConn, warehouseConn);
-            recordsTransformed += loadDimCamera(stagingConn, warehouseConn);
-            recordsTransformed += loadDimOS(stagingConn, warehouseConn);
+            prepareWindows(stagingConn);
+            recordsTransformed += loadDimensions(stagingConn, warehouseConn);
             recordsTransformed += loadFactPhone(stagingConn, warehouseConn);
 
         } catch (SQLException e) {
             e.printStackTrace();
+        } finally {
+            windows = Map.of();
+        }
+        if (keyCache != null) {
+            System.out.println(keyCache);
         }
 
         return recordsTransformed;
     }
 
+    // Chế độ incremental: mỗi bảng đích chỉ đọc các dòng staging thay đổi sau mốc của nó. Mốc trên được chốt
+    // trước khi đọc, nên dòng đến trong lúc đang chạy sẽ thuộc lần sau.
+    private void prepareWindows(Connection stagingConn) throws SQLException {
+        if (!incrementalEnabled) {
+            return;
+        }
+        Timestamp upper = null;
+        try (Statement stmt = stagingConn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(loaded_date), MAX(last_updated) FROM staging_mobile")) {
+            if (rs.next()) {
+                Timestamp loaded = rs.getTimestamp(1);
+                Timestamp updated = rs.getTimestamp(2);
+                upper = loaded == null || (updated != null && updated.after(loaded)) ? updated : loaded;
+            }
+        }
+        if (upper == null) {
+            return; // staging_mobile rỗng
+        }
 
-    private int loadDimBrand(Connection stagingConn, Connection warehouseConn) throws SQLException {
-        int recordsInserted = 0;
-        String selectSQL = "SELECT DISTINCT brand FROM staging_mobile";
-        String checkSQL = "SELECT 1 FROM DimBrand WHERE BrandName = ?";
-        String insertSQL = "INSERT INTO DimBrand (BrandName) VALUES (?)";
+        Map<String, StagingWindow> prepared = new LinkedHashMap<>();
+        List<String> targets = new ArrayList<>(dimensionSteps().keySet());
+        targets.add("FactPhone");
+        for (String target : targets) {
+            Timestamp from = fullRebuild ? null : watermarks.get(target);
+            prepared.put(target, new StagingWindow(from, upper));
+            System.out.println("Transform " + target + ": "
+                    + (from == null ? "full scan" : "rows changed since " + from) + " up to " + upper);
+        }
+        windows = prepared;
+    }
 
-        try (Statement stmt = stagingConn.createStatement();
-             PreparedStatement checkStmt = warehouseConn.prepareStatement(checkSQL);
-             PreparedStatement insertStmt = warehouseConn.prepareStatement(insertSQL)) {
+    private StagingWindow window(String target) {
+        return windows.getOrDefault(target, StagingWindow.ALL);
+    }
 
-            ResultSet rs = stmt.executeQuery(selectSQL);
-            while (rs.next()) {
-                String brand = rs.getString("brand");
-
-                // Kiểm tra sự tồn tại
-                checkStmt.setString(1, brand);
-                try (ResultSet checkRs = checkStmt.executeQuery()) {
-                    if (!checkRs.next()) { // Nếu không tồn tại
-                        insertStmt.setString(1, brand);
-                        recordsInserted += insertStmt.executeUpdate();
-                    }
-                }
-            }
+    // Gọi sau khi dữ liệu của bảng đích đã commit
+    private void advanceWatermark(String target) throws SQLException {
+        StagingWindow window = windows.get(target);
+        if (window != null && !watermarks.advance(target, window.from(), window.to())) {
+            System.out.println("Watermark of " + target + " was moved by another run; keeping the newer value");
         }
-        return recordsInserted;
     }
 
+    // Một bước nạp bảng chiều trên cặp kết nối staging/warehouse được giao
+    @FunctionalInterface
+    private interface DimensionStep {
+        int load(Connection stagingConn, Connection warehouseConn) throws SQLException;
+    }
 
-    private int loadDimModel(Connection stagingConn, Connection warehouseConn) throws SQLException {
+    private Map<String, DimensionStep> dimensionSteps() {
+        Map<String, DimensionStep> steps = new LinkedHashMap<>();
+        steps.put("DimBrand", this::loadDimBrand);
+        steps.put("DimModel", this::loadDimModel); // cần BrandKey nên chạy sau DimBrand
+        steps.put("DimSpecification", this::loadDimSpecification);
+        steps.put("DimProcessor", this::loadDimProcessor);
+        steps.put("DimCamera", this::loadDimCamera);
+        steps.put("DimOS", this::loadDimOS);
+        return steps;
+    }
+
+    // Nạp cả sáu bảng chiều; với transform.dimension.parallelism > 1 các bảng độc lập chạy song song,
+    // mỗi bảng trên kết nối riêng lấy từ pool. Bảng chiều nào lỗi thì cả bước lỗi và fact không được nạp.
+    int loadDimensions(Connection stagingConn, Connection warehouseConn) throws SQLException {
+        if (dimensionParallelism > 1) {
+            return loadDimensionsInParallel();
+        }
         int recordsInserted = 0;
-        String selectSQL = "SELECT DISTINCT model, brand FROM staging_mobile";
-        String checkSQL = "SELECT 1 FROM DimModel WHERE ModelName = ? AND BrandKey = ?";
-        String insertSQL = "INSERT INTO DimModel (ModelName, BrandKey) VALUES (?, ?)";
+        for (Map.Entry<String, DimensionStep> step : dimensionSteps().entrySet()) {
+            recordsInserted += runDimensionStep(step.getKey(), step.getValue(), stagingConn, warehouseConn);
+        }
+        return recordsInserted;
+    }
 
-        try (Statement stmt = stagingConn.createStatement();
-             PreparedStatement checkStmt = warehouseConn.prepareStatement(checkSQL);
-             PreparedStatement insertStmt = warehouseConn.prepareStatement(insertSQL)) {
+    private int runDimensionStep(String dimension, DimensionStep step, Connection stagingConn, Connection warehouseConn)
+            throws SQLException {
+        long start = System.nanoTime();
+        int inserted = step.load(stagingConn, warehouseConn);
+        advanceWatermark(dimension);
+        System.out.println("Dimension " + dimension + ": " + inserted + " new members in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        return inserted;
+    }
 
-            ResultSet rs = stmt.executeQuery(selectSQL);
-            while (rs.next()) {
-                String model = rs.getString("model");
-                int brandKey = getDimKey("DimBrand", "BrandName", rs.getString("brand"), warehouseConn);
-
-                // Kiểm tra sự tồn tại
-                checkStmt.setString(1, model);
-                checkStmt.setInt(2, brandKey);
-                try (ResultSet checkRs = checkStmt.executeQuery()) {
-                    if (!checkRs.next()) { // Nếu không tồn tại
-                        insertStmt.setString(1, model);
-                        insertStmt.setInt(2, brandKey);
-                        recordsInserted += insertStmt.executeUpdate();
-                    }
+    // Bảng chưa bắt đầu khi đã có lỗi (FAIL_FAST) thì bỏ qua
+    private int startDimensionStep(String dimension, DimensionStep step, AtomicBoolean stopPending) {
+        if (stopPending.get()) {
+            throw new CancellationException(dimension + " was not started because another dimension failed");
+        }
+        return runDimensionStepOnOwnConnections(dimension, step);
+    }
+
+    private int runDimensionStepOnOwnConnections(String dimension, DimensionStep step) {
+        try (Connection stagingConn = ConnectionPool.getConnection(stagingDbUrl);
+             Connection warehouseConn = ConnectionPool.getConnection(warehouseDbUrl)) {
+            return runDimensionStep(dimension, step, stagingConn, warehouseConn);
+        } catch (SQLException e) {
+            System.err.println("Dimension " + dimension + " failed: " + e.getMessage());
+            throw new CompletionException(new SQLException("Failed to load " + dimension, e));
+        }
+    }
+
+    // FAIL_FAST: bảng chiều đầu tiên lỗi thì các bảng chưa bắt đầu sẽ không chạy nữa; bảng đang chạy vẫn chạy xong
+    // và commit. CONTINUE: để các bảng còn lại chạy xong (mỗi bảng là một transaction riêng nên phần đã xong vẫn đúng),
+    // sau đó báo lỗi của tất cả bảng hỏng.
+    private int loadDimensionsInParallel() throws SQLException {
+        Map<String, DimensionStep> steps = dimensionSteps();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(dimensionParallelism, steps.size()), r -> {
+            Thread thread = new Thread(r, "dimension-loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Không dùng cancel(): future bị hủy khi bảng đang chạy thì bảng vẫn commit nhưng số dòng bị mất
+        AtomicBoolean stopPending = new AtomicBoolean();
+        Map<String, CompletableFuture<Integer>> futures = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, DimensionStep> step : steps.entrySet()) {
+                String dimension = step.getKey();
+                if (dimension.equals("DimModel")) {
+                    futures.put(dimension, futures.get("DimBrand").thenApplyAsync(
+                            brandRows -> startDimensionStep(dimension, step.getValue(), stopPending), executor));
+                } else {
+                    futures.put(dimension, CompletableFuture.supplyAsync(
+                            () -> startDimensionStep(dimension, step.getValue(), stopPending), executor));
+                }
+                if (dimensionFailFast) {
+                    futures.get(dimension).whenComplete((rows, e) -> {
+                        if (e != null) {
+                            stopPending.set(true);
+                        }
+                    });
+                }
+            }
+            try {
+                CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).join();
+            } catch (CompletionException ignored) {
+                // Lỗi của từng bảng được gom lại bên dưới
+            }
+        } finally {
+            // Chờ các bảng đang chạy kết thúc transaction của chúng trước khi trả kết nối
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        int recordsInserted = 0;
+        List<String> failed = new ArrayList<>();
+        List<Throwable> causes = new ArrayList<>();
+        for (Map.Entry<String, CompletableFuture<Integer>> entry : futures.entrySet()) {
+            try {
+                recordsInserted += entry.getValue().join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof CancellationException) {
+                    failed.add(entry.getKey() + " (not started)");
+                    continue;
+                }
+                // DimModel hỏng theo DimBrand mang cùng một lỗi
+                boolean dependent = causes.contains(e.getCause());
+                failed.add(entry.getKey() + (dependent ? " (skipped)" : ""));
+                if (!dependent) {
+                    causes.add(e.getCause());
                 }
             }
         }
+        if (!failed.isEmpty()) {
+            SQLException failure = new SQLException("Dimension load failed: " + String.join(", ", failed)
+                    + "; " + recordsInserted + " new members were committed by the dimensions that finished",
+                    causes.isEmpty() ? null : causes.get(0));
+            causes.stream().skip(1).forEach(failure::addSuppressed);
+            throw failure;
+        }
         return recordsInserted;
     }
 
 
+    private int loadDimBrand(Connection stagingConn, Connection warehouseConn) throws SQLException {
+        return BRAND_LOADER.load(stagingConn, "SELECT DISTINCT brand FROM staging_mobile", window("DimBrand"),
+                rs -> new Object[]{rs.getString("brand")},
+                warehouseConn, keyCache());
+    }
+
+
+    private int loadDimModel(Connection stagingConn, Connection warehouseConn) throws SQLException {
+        return MODEL_LOADER.load(stagingConn, "SELECT DISTINCT model, brand FROM staging_mobile", window("DimModel"),
+                rs -> new Object[]{rs.getString("model"),
+                        lookupDimKey("DimBrand", "BrandName", rs.getString("brand"), warehouseConn)},
+                warehouseConn, keyCache());
+    }
+
+
     private int loadDimSpecification(Connection stagingConn, Connection warehouseConn) throws SQLException {
-        int recordsInserted = 0;
-        String selectSQL = "SELECT DISTINCT battery_capacity, screen_size, touchscreen, resolution_x, resolution_y, ram, internal_storage FROM staging_mobile";
-        String checkSQL = "SELECT 1 FROM DimSpecification WHERE BatteryCapacity = ? AND ScreenSize = ? AND Touchscreen = ? AND ResolutionX = ? AND ResolutionY = ? AND RAM = ? AND InternalStorage = ?";
-        String insertSQL = "INSERT INTO DimSpecification (BatteryCapacity, ScreenSize, Touchscreen, ResolutionX, ResolutionY, RAM, InternalStorage) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        return SPECIFICATION_LOADER.load(stagingConn,
+                "SELECT DISTINCT battery_capacity, screen_size, touchscreen, resolution_x, resolution_y, ram, internal_storage FROM staging_mobile",
+                window("DimSpecification"),
+                rs -> new Object[]{rs.getInt("battery_capacity"), rs.getDouble("screen_size"), rs.getBoolean("touchscreen"),
+                        rs.getInt("resolution_x"), rs.getInt("resolution_y"), rs.getInt("ram"), rs.getInt("internal_storage")},
+                warehouseConn, keyCache());
+    }
 
-        try (Statement stmt = stagingConn.createStatement();
-             PreparedStatement checkStmt = warehouseConn.prepareStatement(checkSQL);
-             PreparedStatement insertStmt = warehouseConn.prepareStatement(insertSQL)) {
 
-            ResultSet rs = stmt.executeQuery(selectSQL);
-            while (rs.next()) {
-                checkStmt.setInt(1, rs.getInt("battery_capacity"));
-                checkStmt.setDouble(2, rs.getDouble("screen_size"));
-                checkStmt.setBoolean(3, rs.getBoolean("touchscreen"));
-                checkStmt.setInt(4, rs.getInt("resolution_x"));
-                checkStmt.setInt(5, rs.getInt("resolution_y"));
-                checkStmt.setInt(6, rs.getInt("ram"));
-                checkStmt.setInt(7, rs.getInt("internal_storage"));
-
-                try (ResultSet checkRs = checkStmt.executeQuery()) {
-                    if (!checkRs.next()) { // Nếu không tồn tại
-                        insertStmt.setInt(1, rs.getInt("battery_capacity"));
-                        insertStmt.setDouble(2, rs.getDouble("screen_size"));
-                        insertStmt.setBoolean(3, rs.getBoolean("touchscreen"));
-                        insertStmt.setInt(4, rs.getInt("resolution_x"));
-                        insertStmt.setInt(5, rs.getInt("resolution_y"));
-                        insertStmt.setInt(6, rs.getInt("ram"));
-                        insertStmt.setInt(7, rs.getInt("internal_storage"));
-                        recordsInserted += insertStmt.executeUpdate();
-                    }
+
+    int loadFactPhone(Connection stagingConn, Connection warehouseConn) throws SQLException {
+        if (factParallelism > 1) {
+            return loadFactPhonePartitioned(stagingConn, warehouseConn);
+        }
+        FactPhoneLoader loader = new FactPhoneLoader(factBatchSize);
+        loader.loadIndex(warehouseConn);
+        readFactRows(stagingConn, warehouseConn, new FactPhoneLoader[]{loader});
+        int inserted = loader.finish(warehouseConn);
+        advanceWatermark("FactPhone");
+        return inserted;
+    }
+
+    // Đọc staging_mobile một lần, tra khóa chiều và giao từng dòng cho loader của partition chứa nó
+    private void readFactRows(Connection stagingConn, Connection warehouseConn, FactPhoneLoader[] loaders) throws SQLException {
+        String selectSQL = "SELECT model, screen_size, processor, rear_camera, operating_system, price FROM staging_mobile";
+        StagingWindow window = window("FactPhone");
+        try (PreparedStatement pstmt = stagingConn.prepareStatement(selectSQL + window.where())) {
+            window.bind(pstmt);
+            if (pipelineEnabled) {
+                readFactRowsPipelined(pstmt, loaders);
+                return;
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int modelKey = lookupDimKey("DimModel", "ModelName", rs.getString("model"), warehouseConn);
+                    loaders[FactPhoneLoader.partitionOf(modelKey, loaders.length)].add(
+                            modelKey,
+                            lookupDimKey("DimSpecification", "ScreenSize", rs.getString("screen_size"), warehouseConn),
+                            lookupDimKey("DimProcessor", "ProcessorName", rs.getString("processor"), warehouseConn),
+                            lookupDimKey("DimCamera", "RearCamera", rs.getString("rear_camera"), warehouseConn),
+                            lookupDimKey("DimOS", "OSName", rs.getString("operating_system"), warehouseConn),
+                            rs.getDouble("price"));
                 }
             }
         }
-        return recordsInserted;
     }
 
+    // Một chunk đã tra khóa chiều: 5 khóa mỗi dòng liền nhau trong keys
+    private record ResolvedFactRows(int[] keys, double[] prices) {
+    }
+
+    // transform.pipeline.enable: luồng đọc staging chạy song song với các writer. Writer tra khóa chiều song song,
+    // nhưng giao dòng cho loader theo đúng thứ tự đọc staging, rồi ghi dần dòng mới ngoài phần có thứ tự đó.
+    // Mỗi loader ghi dần trên kết nối riêng trong lúc đọc, phần còn lại ghi ở finish().
+    private void readFactRowsPipelined(PreparedStatement stagingStmt, FactPhoneLoader[] loaders) throws SQLException {
+        StagingPipeline pipeline = new StagingPipeline(pipelineQueueCapacity, pipelineChunkSize, pipelineFetchSize, pipelineWriters);
+        try {
+            for (FactPhoneLoader loader : loaders) {
+                loader.beginStreaming(ConnectionPool.getConnection(warehouseDbUrl));
+            }
+            StagingPipeline.Metrics metrics = pipeline.run(stagingStmt,
+                    rs -> new Object[]{rs.getString("model"), rs.getString("screen_size"), rs.getString("processor"),
+                            rs.getString("rear_camera"), rs.getString("operating_system"), rs.getDouble("price")},
+                    () -> {
+                        // Kết nối riêng của writer chỉ dùng khi tra khóa không có trong cache
+                        Connection lookupConn = ConnectionPool.getConnection(warehouseDbUrl);
+                        return new StagingPipeline.ChunkWriter<ResolvedFactRows>() {
+                            @Override
+                            public ResolvedFactRows prepare(List<Object[]> rows) throws SQLException {
+                                int[] keys = new int[rows.size() * 5];
+                                double[] prices = new double[rows.size()];
+                                for (int i = 0; i < rows.size(); i++) {
+                                    Object[] row = rows.get(i);
+                                    keys[i * 5] = lookupDimKey("DimModel", "ModelName", (String) row[0], lookupConn);
+                                    keys[i * 5 + 1] = lookupDimKey("DimSpecification", "ScreenSize", (String) row[1], lookupConn);
+                                    keys[i * 5 + 2] = lookupDimKey("DimProcessor", "ProcessorName", (String) row[2], lookupConn);
+                                    keys[i * 5 + 3] = lookupDimKey("DimCamera", "RearCamera", (String) row[3], lookupConn);
+                                    keys[i * 5 + 4] = lookupDimKey("DimOS", "OSName", (String) row[4], lookupConn);
+                                    prices[i] = (Double) row[5];
+                                }
+                                return new ResolvedFactRows(keys, prices);
+                            }
+
+                            @Override
+                            public void apply(ResolvedFactRows resolved) {
+                                int[] keys = resolved.keys();
+                                for (int i = 0; i < resolved.prices().length; i++) {
+                                    int base = i * 5;
+                                    loaders[FactPhoneLoader.partitionOf(keys[base], loaders.length)].add(keys[base],
+                                            keys[base + 1], keys[base + 2], keys[base + 3], keys[base + 4], resolved.prices()[i]);
+                                }
+                            }
+
+                            @Override
+                            public void afterApply() {
+                                for (FactPhoneLoader loader : loaders) {
+                                    loader.flushReady();
+                                }
+                            }
+
+                            @Override
+                            public void close() throws SQLException {
+                                lookupConn.close();
+                            }
+                        };
+                    });
+            System.out.println("FactPhone pipeline: " + metrics);
+        } catch (SQLException | RuntimeException e) {
+            for (FactPhoneLoader loader : loaders) {
+                loader.abortStreaming();
+            }
+            throw e;
+        }
+    }
 
+    // Một giai đoạn của một partition FactPhone trên kết nối warehouse được giao
+    @FunctionalInterface
+    private interface PartitionStep {
+        int run(FactPhoneLoader loader, Connection warehouseConn) throws SQLException;
+    }
 
-    private int loadFactPhone(Connection stagingConn, Connection warehouseConn) throws SQLException {
-        int recordsInserted = 0;
-        String selectSQL = "SELECT * FROM staging_mobile";
-        String checkSQL = "SELECT PhoneKey, Price FROM FactPhone WHERE ModelKey = ? AND SpecKey = ? AND ProcessorKey = ? AND CameraKey = ? AND OSKey = ?";
-        String insertSQL = "INSERT INTO FactPhone (ModelKey, SpecKey, ProcessorKey, CameraKey, OSKey, Price, CreatedDate, UpdatedDate) VALUES (?, ?, ?, ?, ?, ?, GETDATE(), NULL)";
-        String updateSQL = "UPDATE FactPhone SET Price = ?, UpdatedDate = GETDATE() WHERE PhoneKey = ?";
+    // transform.fact.parallelism > 1: chia FactPhone theo ABS(ModelKey) % n, mỗi partition nạp index và ghi
+    // transaction riêng trên kết nối riêng. Staging vẫn chỉ đọc một lần vì phân loại trong bộ nhớ rất rẻ;
+    // phần chậm là đọc FactPhone và ghi warehouse. Partition đã commit thì giữ nguyên khi partition khác lỗi,
+    // mốc watermark không đẩy lên nên lần chạy sau xử lý lại (idempotent).
+    private int loadFactPhonePartitioned(Connection stagingConn, Connection warehouseConn) throws SQLException {
+        FactPhoneLoader[] loaders = new FactPhoneLoader[factParallelism];
+        for (int partition = 0; partition < loaders.length; partition++) {
+            loaders[partition] = new FactPhoneLoader(factBatchSize, loaders.length, partition);
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(loaders.length, r -> {
+            Thread thread = new Thread(r, "fact-loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            runPartitions(executor, loaders, "index", (loader, conn) -> {
+                loader.loadIndex(conn);
+                return (int) loader.existingRows();
+            });
+            readFactRows(stagingConn, warehouseConn, loaders);
+            int[] inserted = runPartitions(executor, loaders, "write", FactPhoneLoader::finish);
+            reconcileFactPhone(warehouseConn, loaders, inserted);
+            advanceWatermark("FactPhone");
+
+            int recordsInserted = 0;
+            for (int rows : inserted) {
+                recordsInserted += rows;
+            }
+            return recordsInserted;
+        } finally {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 
-        try (Statement stmt = stagingConn.createStatement();
-             PreparedStatement checkStmt = warehouseConn.prepareStatement(checkSQL);
-             PreparedStatement insertStmt = warehouseConn.prepareStatement(insertSQL);
-             PreparedStatement updateStmt = warehouseConn.prepareStatement(updateSQL)) {
+    // Chạy một giai đoạn trên mọi partition và chờ tất cả xong; partition hỏng không làm dừng các partition khác
+    private int[] runPartitions(ExecutorService executor, FactPhoneLoader[] loaders, String phase, PartitionStep step)
+            throws SQLException {
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int partition = 0; partition < loaders.length; partition++) {
+            int p = partition;
+            futures.add(CompletableFuture.supplyAsync(() -> runPartitionWithRetry(p, phase, loaders[p], step), executor));
+        }
 
-            ResultSet rs = stmt.executeQuery(selectSQL);
-            while (rs.next()) {
-                int modelKey = getDimKey("DimModel", "ModelName", rs.getString("model"), warehouseConn);
-                int specKey = getDimKey("DimSpecification", "ScreenSize", rs.getString("screen_size"), warehouseConn);
-                int processorKey = getDimKey("DimProcessor", "ProcessorName", rs.getString("processor"), warehouseConn);
-                int cameraKey = getDimKey("DimCamera", "RearCamera", rs.getString("rear_camera"), warehouseConn);
-                int osKey = getDimKey("DimOS", "OSName", rs.getString("operating_system"), warehouseConn);
-
-                double newPrice = rs.getDouble("price");
-
-                // Kiểm tra bản ghi hiện tại
-                checkStmt.setInt(1, modelKey);
-                checkStmt.setInt(2, specKey);
-                checkStmt.setInt(3, processorKey);
-                checkStmt.setInt(4, cameraKey);
-                checkStmt.setInt(5, osKey);
-
-                try (ResultSet checkRs = checkStmt.executeQuery()) {
-                    if (checkRs.next()) {
-                        // Nếu đã tồn tại, kiểm tra giá
-                        int phoneKey = checkRs.getInt("PhoneKey");
-                        double oldPrice = checkRs.getDouble("Price");
-
-                        if (oldPrice != newPrice) {
-                            // Cập nhật giá nếu khác nhau
-                            updateStmt.setDouble(1, newPrice);
-                            updateStmt.setInt(2, phoneKey);
-                            updateStmt.executeUpdate();
-
-                            // Ghi log cập nhật giá
-                            logPriceUpdate(warehouseConn, phoneKey, oldPrice, newPrice);
-                        }
-                    } else {
-                        // Nếu chưa tồn tại, thêm mới
-                        insertStmt.setInt(1, modelKey);
-                        insertStmt.setInt(2, specKey);
-                        insertStmt.setInt(3, processorKey);
-                        insertStmt.setInt(4, cameraKey);
-                        insertStmt.setInt(5, osKey);
-                        insertStmt.setDouble(6, newPrice);
-                        recordsInserted += insertStmt.executeUpdate();
-                    }
+        int[] results = new int[loaders.length];
+        List<String> failed = new ArrayList<>();
+        List<Throwable> causes = new ArrayList<>();
+        for (int partition = 0; partition < loaders.length; partition++) {
+            try {
+                results[partition] = futures.get(partition).join();
+            } catch (CompletionException e) {
+                failed.add(String.valueOf(partition));
+                causes.add(e.getCause());
+            }
+        }
+        if (!failed.isEmpty()) {
+            SQLException failure = new SQLException("FactPhone " + phase + " failed for partition(s) " + String.join(", ", failed),
+                    causes.get(0));
+            causes.stream().skip(1).forEach(failure::addSuppressed);
+            throw failure;
+        }
+        return results;
+    }
+
+    // Mỗi lần thử lấy kết nối mới từ pool, vì kết nối cũ có thể đã hỏng (deadlock victim, mất mạng...)
+    private int runPartitionWithRetry(int partition, String phase, FactPhoneLoader loader, PartitionStep step) {
+        for (int attempt = 1; ; attempt++) {
+            long start = System.nanoTime();
+            try (Connection warehouseConn = ConnectionPool.getConnection(warehouseDbUrl)) {
+                int rows = step.run(loader, warehouseConn);
+                System.out.println("FactPhone partition " + partition + " " + phase + ": " + rows + " rows in "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+                return rows;
+            } catch (SQLException e) {
+                if (attempt >= factPartitionMaxAttempts) {
+                    System.err.println("FactPhone partition " + partition + " " + phase + " failed: " + e.getMessage());
+                    throw new CompletionException(new SQLException("FactPhone partition " + partition + " " + phase
+                            + " failed after " + attempt + " attempts", e));
                 }
+                System.err.println("FactPhone partition " + partition + " " + phase + " attempt " + attempt
+                        + " failed, retrying: " + e.getMessage());
+            }
+            try {
+                Thread.sleep(factPartitionRetryDelayMs * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(new SQLException("Interrupted while retrying FactPhone partition " + partition, e));
             }
         }
-        return recordsInserted;
+    }
+
+    // Đối chiếu cuối: mỗi partition phải có đúng số dòng lúc nạp index cộng số dòng vừa thêm. Lệch nghĩa là
+    // một lần thử lại đã ghi trùng (commit thành công nhưng báo lỗi) hoặc có tiến trình khác ghi FactPhone.
+    private void reconcileFactPhone(Connection warehouseConn, FactPhoneLoader[] loaders, int[] inserted) throws SQLException {
+        int partitions = loaders.length;
+        long[] actual = new long[partitions];
+        String partitionExpr = "ABS(ModelKey) % " + partitions;
+        // Dòng có ModelKey NULL không thuộc partition nào (bộ lọc partition cũng bỏ qua chúng), nên không đếm
+        try (Statement stmt = warehouseConn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT " + partitionExpr + ", COUNT(*) FROM FactPhone"
+                     + " WHERE ModelKey IS NOT NULL GROUP BY " + partitionExpr)) {
+            while (rs.next()) {
+                actual[rs.getInt(1)] = rs.getLong(2);
+            }
+        }
+
+        long total = 0;
+        List<String> mismatches = new ArrayList<>();
+        for (int partition = 0; partition < partitions; partition++) {
+            long expected = loaders[partition].existingRows() + inserted[partition];
+            if (actual[partition] != expected) {
+                mismatches.add("partition " + partition + " expected " + expected + " rows, found " + actual[partition]);
+            }
+            total += actual[partition];
+        }
+        if (!mismatches.isEmpty()) {
+            throw new SQLException("FactPhone reconciliation failed: " + String.join("; ", mismatches));
+        }
+        System.out.println("FactPhone reconciliation: " + total + " rows in " + partitions + " partitions match");
     }
 
 
@@ -223,145 +580,57 @@ public class DataTransformer {
         return -1; // Trả về -1 nếu không tìm thấy
     }
 
-    private void logPriceUpdate(Connection warehouseConn, int phoneKey, double oldPrice, double newPrice) throws SQLException {
-        String logSQL = "INSERT INTO fact_price_update_log (fact_id, old_price, new_price, updated_at) VALUES (?, ?, ?, GETDATE())";
-        try (PreparedStatement logStmt = warehouseConn.prepareStatement(logSQL)) {
-            logStmt.setInt(1, phoneKey);
-            logStmt.setDouble(2, oldPrice);
-            logStmt.setDouble(3, newPrice);
-            logStmt.executeUpdate();
-        }
-    }
-
 
 
     private int loadDimProcessor(Connection stagingConn, Connection warehouseConn) throws SQLException {
-        int recordsInserted = 0;
-        String selectSQL = "SELECT DISTINCT processor FROM staging_mobile";
-        String checkSQL = "SELECT COUNT(*) FROM DimProcessor WHERE ProcessorName = ?";
-        String insertSQL = "INSERT INTO DimProcessor (ProcessorName) VALUES (?)";
-
-        try (Statement stmt = stagingConn.createStatement();
-             PreparedStatement checkStmt = warehouseConn.prepareStatement(checkSQL);
-             PreparedStatement insertStmt = warehouseConn.prepareStatement(insertSQL)) {
-
-            ResultSet rs = stmt.executeQuery(selectSQL);
-            while (rs.next()) {
-                String processor = rs.getString("processor");
-
-                // Check if the processor already exists
-                checkStmt.setString(1, processor);
-                ResultSet checkResult = checkStmt.executeQuery();
-                checkResult.next();
-
-                if (checkResult.getInt(1) == 0) { // If not exists, insert
-                    insertStmt.setString(1, processor);
-                    recordsInserted += insertStmt.executeUpdate();
-                }
-            }
-        }
-        return recordsInserted;
+        return PROCESSOR_LOADER.load(stagingConn, "SELECT DISTINCT processor FROM staging_mobile", window("DimProcessor"),
+                rs -> new Object[]{rs.getString("processor")},
+                warehouseConn, keyCache());
     }
 
 
 
     private int loadDimCamera(Connection stagingConn, Connection warehouseConn) throws SQLException {
-        int recordsInserted = 0;
-        String selectSQL = "SELECT DISTINCT rear_camera, front_camera FROM staging_mobile";
-        String checkSQL = "SELECT COUNT(*) FROM DimCamera WHERE RearCamera = ? AND FrontCamera = ?";
-        String insertSQL = "INSERT INTO DimCamera (RearCamera, FrontCamera) VALUES (?, ?)";
-
-        try (Statement stmt = stagingConn.createStatement();
-             PreparedStatement checkStmt = warehouseConn.prepareStatement(checkSQL);
-             PreparedStatement insertStmt = warehouseConn.prepareStatement(insertSQL)) {
-
-            ResultSet rs = stmt.executeQuery(selectSQL);
-            while (rs.next()) {
-                String rearCamera = rs.getString("rear_camera");
-                String frontCamera = rs.getString("front_camera");
-
-                // Check if the camera combination already exists
-                checkStmt.setString(1, rearCamera);
-                checkStmt.setString(2, frontCamera);
-                ResultSet checkResult = checkStmt.executeQuery();
-                checkResult.next();
-
-                if (checkResult.getInt(1) == 0) { // If not exists, insert
-                    insertStmt.setString(1, rearCamera);
-                    insertStmt.setString(2, frontCamera);
-                    recordsInserted += insertStmt.executeUpdate();
-                }
-            }
-        }
-        return recordsInserted;
+        return CAMERA_LOADER.load(stagingConn, "SELECT DISTINCT rear_camera, front_camera FROM staging_mobile", window("DimCamera"),
+                rs -> new Object[]{rs.getString("rear_camera"), rs.getString("front_camera")},
+                warehouseConn, keyCache());
     }
 
 
 
     private int loadDimOS(Connection stagingConn, Connection warehouseConn) throws SQLException {
-        int recordsInserted = 0;
-        String selectSQL = "SELECT DISTINCT operating_system FROM staging_mobile";
-        String checkSQL = "SELECT COUNT(*) FROM DimOS WHERE OSName = ?";
-        String insertSQL = "INSERT INTO DimOS (OSName) VALUES (?)";
+        return OS_LOADER.load(stagingConn, "SELECT DISTINCT operating_system FROM staging_mobile", window("DimOS"),
+                rs -> new Object[]{rs.getString("operating_system")},
+                warehouseConn, keyCache());
+    }
 
-        try (Statement stmt = stagingConn.createStatement();
-             PreparedStatement checkStmt = warehouseConn.prepareStatement(checkSQL);
-             PreparedStatement insertStmt = warehouseConn.prepareStatement(insertSQL)) {
 
-            ResultSet rs = stmt.executeQuery(selectSQL);
-            while (rs.next()) {
-                String osName = rs.getString("operating_system");
 
-                // Check if the OS already exists
-                checkStmt.setString(1, osName);
-                ResultSet checkResult = checkStmt.executeQuery();
-                checkResult.next();
 
-                if (checkResult.getInt(1) == 0) { // If not exists, insert
-                    insertStmt.setString(1, osName);
-                    recordsInserted += insertStmt.executeUpdate();
-                }
-            }
-        }
-        return recordsInserted;
+    // Tra khóa qua DimensionKeyCache; khi cache bị tắt thì mỗi lần là một câu SELECT như cũ
+    int lookupDimKey(String tableName, String columnName, String value, Connection warehouseConn) throws SQLException {
+        DimensionKeyCache cache = keyCache();
+        return cache == null ? getDimKey(tableName, columnName, value, warehouseConn) : cache.get(warehouseConn, tableName, columnName, value);
     }
 
+    private synchronized DimensionKeyCache keyCache() {
+        if (keyCacheEnabled && keyCache == null) {
+            keyCache = new DimensionKeyCache(keyCacheMaxEntries);
+        }
+        return keyCache;
+    }
 
-
-
-    private int getDimKey(String tableName, String columnName, String value, Connection conn) throws SQLException {
-        String keyColumn = "";
-
+    int getDimKey(String tableName, String columnName, String value, Connection conn) throws SQLException {
         // Xác định tên khóa chính dựa trên tên bảng
-        switch (tableName) {
-            case "DimBrand":
-                keyColumn = "BrandKey"; // Sử dụng tên cột đúng
-                break;
-            case "DimModel":
-                keyColumn = "ModelKey";
-                break;
-            case "DimSpecification":
-                keyColumn = "SpecKey";
-                break;
-            case "DimProcessor":
-                keyColumn = "ProcessorKey";
-                break;
-            case "DimCamera":
-                keyColumn = "CameraKey";
-                break;
-            case "DimOS":
-                keyColumn = "OSKey";
-                break;
-            default:
-                throw new SQLException("Invalid table name: " + tableName);
-        }
+        String keyColumn = DimensionKeyCache.keyColumn(tableName);
 
         String sql = "SELECT " + keyColumn + " FROM " + tableName + " WHERE " + columnName + " = ?";
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, value);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
             }
         }
         return -1; // Trả về -1 nếu không tìm thấy
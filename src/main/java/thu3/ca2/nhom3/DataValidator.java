@@ -8,10 +8,26 @@ import java.sql.Statement;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.stream.Collectors;
 
 public class DataValidator {
+    // Result of a single-pass scan. Counts follow the order the checks are applied in: range counts only cover
+    // rows without NULLs, and duplicates only rows that pass both, so totals match running the checks one by one.
+    public record QualityReport(long totalRows, Map<String, Long> nullCounts, Map<String, Long> rangeCounts,
+                                long duplicateGroups, long duplicateRows, long invalidRows) {
+        public long nullTotal() {
+            return nullCounts.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        public long rangeTotal() {
+            return rangeCounts.values().stream().mapToLong(Long::longValue).sum();
+        }
+    }
+
     private Connection connection;
     private List<String> nullColumns;
     private List<String> rangeColumns;
@@ -26,14 +42,14 @@ public class DataValidator {
     }
 
     private void loadConfigurations() {
-        try (FileInputStream fis = new FileInputStream("config.properties")) {
+        try (FileInputStream fis = new FileInputStream(System.getProperty("etl.config", "config.properties"))) {
             Properties props = new Properties();
             props.load(fis);
 
             // Load column configurations
-            nullColumns = Arrays.asList(props.getProperty("validation.null.columns", "").split(","));
-            rangeColumns = Arrays.asList(props.getProperty("validation.range.columns", "").split(","));
-            duplicateColumns = Arrays.asList(props.getProperty("validation.duplicate.columns", "").split(","));
+            nullColumns = parseColumns(props.getProperty("validation.null.columns", ""));
+            rangeColumns = parseColumns(props.getProperty("validation.range.columns", ""));
+            duplicateColumns = parseColumns(props.getProperty("validation.duplicate.columns", ""));
 
             // Load rule toggles
             validateNull = Boolean.parseBoolean(props.getProperty("validation.null.enable", "true"));
@@ -44,83 +60,79 @@ public class DataValidator {
         }
     }
 
-    public boolean isValidateNull() {
-        return validateNull;
-    }
-
-    public boolean isValidateRange() {
-        return validateRange;
-    }
-
-    public boolean isValidateDuplicate() {
-        return validateDuplicate;
-    }
-
-    public List<String> getNullColumns() {
-        return nullColumns;
-    }
-
-    public List<String> getRangeColumns() {
-        return rangeColumns;
+    // An empty setting means no columns rather than one blank column name
+    private static List<String> parseColumns(String value) {
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(column -> !column.isEmpty())
+                .toList();
     }
 
     public List<String> getDuplicateColumns() {
         return duplicateColumns;
     }
 
-    public int checkNullValues(String tableName) throws SQLException {
-        int nullCount = 0;
-        for (String column : nullColumns) {
-            String sql = "SELECT COUNT(*) AS invalid_count FROM " + tableName + " WHERE " + column + " IS NULL";
-            try (Statement stmt = connection.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql)) {
-                if (rs.next()) {
-                    nullCount += rs.getInt("invalid_count");
-                }
+    // Computes every enabled check in one scan of the table using conditional aggregation, instead of one
+    // COUNT query per column plus a separate GROUP BY for duplicates.
+    public QualityReport scan(String tableName) throws SQLException {
+        List<String> nulls = validateNull ? nullColumns : List.of();
+        List<String> ranges = validateRange ? rangeColumns : List.of();
+
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) AS total_rows");
+        for (int i = 0; i < nulls.size(); i++) {
+            sql.append(", SUM(CASE WHEN ").append(nulls.get(i)).append(" IS NULL THEN 1 ELSE 0 END) AS null_").append(i);
+        }
+        for (int i = 0; i < ranges.size(); i++) {
+            sql.append(", SUM(CASE WHEN null_flag = 0 AND ").append(ranges.get(i)).append(" < 0 THEN 1 ELSE 0 END) AS range_").append(i);
+        }
+        sql.append(", SUM(CASE WHEN null_flag = 0 AND range_flag = 0 AND dup_rank = 2 THEN 1 ELSE 0 END) AS duplicate_groups")
+                .append(", SUM(CASE WHEN null_flag = 0 AND range_flag = 0 AND dup_rank > 1 THEN 1 ELSE 0 END) AS duplicate_rows")
+                .append(", SUM(CASE WHEN null_flag = 1 OR range_flag = 1 OR dup_rank > 1 THEN 1 ELSE 0 END) AS invalid_rows")
+                .append(" FROM ").append(flaggedRows(tableName));
+
+        Map<String, Long> nullCounts = new LinkedHashMap<>();
+        Map<String, Long> rangeCounts = new LinkedHashMap<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql.toString())) {
+            rs.next();
+            for (int i = 0; i < nulls.size(); i++) {
+                nullCounts.put(nulls.get(i), rs.getLong("null_" + i));
+            }
+            for (int i = 0; i < ranges.size(); i++) {
+                rangeCounts.put(ranges.get(i), rs.getLong("range_" + i));
             }
+            return new QualityReport(rs.getLong("total_rows"), nullCounts, rangeCounts,
+                    rs.getLong("duplicate_groups"), rs.getLong("duplicate_rows"), rs.getLong("invalid_rows"));
         }
-        return nullCount;
     }
 
-    public int checkRangeValues(String tableName) throws SQLException {
-        int rangeCount = 0;
-        for (String column : rangeColumns) {
-            String sql = "SELECT COUNT(*) AS invalid_count FROM " + tableName + " WHERE " + column + " < 0";
-            try (Statement stmt = connection.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql)) {
-                if (rs.next()) {
-                    rangeCount += rs.getInt("invalid_count");
-                }
-            }
-        }
-        return rangeCount;
+    // Selects every row that fails a check, with the table's columns first and the failing check last
+    // (NULL_CHECK, then RANGE_CHECK, then DUPLICATE_CHECK, matching the order the checks are applied in)
+    public String invalidRowsQuery(String tableName) {
+        return "SELECT f.*, CASE WHEN null_flag = 1 THEN 'NULL_CHECK' WHEN range_flag = 1 THEN 'RANGE_CHECK'"
+                + " ELSE 'DUPLICATE_CHECK' END AS dq_reason FROM " + flaggedRows(tableName)
+                + " WHERE null_flag = 1 OR range_flag = 1 OR dup_rank > 1";
     }
 
-    public int checkDuplicates(String tableName) throws SQLException {
-        int duplicateCount = 0;
-        // Ensure duplicateColumns is defined and is a List<String>
-        if (!duplicateColumns.isEmpty()) {
-            // Create a comma-separated string of columns for GROUP BY
-            String groupByColumns = String.join(", ", duplicateColumns); // Use double quotes for the delimiter
-
-            // New SQL query for SQL Server
-            String sql = String.format("""
-            SELECT COUNT(*) as duplicate_count
-            FROM (
-                SELECT %s, COUNT(*) as record_count
-                FROM %s
-                GROUP BY %s
-                HAVING COUNT(*) > 1
-            ) AS DuplicateGroups
-            """, groupByColumns, tableName, groupByColumns);
-
-            try (Statement stmt = connection.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql)) {
-                if (rs.next()) {
-                    duplicateCount = rs.getInt("duplicate_count");
-                }
-            }
+    // Number of helper columns invalidRowsQuery adds after the table's own columns
+    public static int helperColumnCount() {
+        return 4;
+    }
+
+    // The table with one flag per check. Duplicates are ranked only among rows that pass the NULL and range
+    // checks (the flags are part of the partition), so the first row of each group by id is kept.
+    private String flaggedRows(String tableName) {
+        List<String> nulls = validateNull ? nullColumns : List.of();
+        List<String> ranges = validateRange ? rangeColumns : List.of();
+        String nullFlag = nulls.isEmpty() ? "0" : "CASE WHEN " + nulls.stream()
+                .map(column -> column + " IS NULL").collect(Collectors.joining(" OR ")) + " THEN 1 ELSE 0 END";
+        String rangeFlag = ranges.isEmpty() ? "0" : "CASE WHEN " + ranges.stream()
+                .map(column -> column + " < 0").collect(Collectors.joining(" OR ")) + " THEN 1 ELSE 0 END";
+        String flagged = "(SELECT t.*, " + nullFlag + " AS null_flag, " + rangeFlag + " AS range_flag FROM " + tableName + " t) c";
+        if (!validateDuplicate || duplicateColumns.isEmpty()) {
+            return "(SELECT c.*, 1 AS dup_rank FROM " + flagged + ") f";
         }
-        return duplicateCount;
+        return "(SELECT c.*, ROW_NUMBER() OVER (PARTITION BY null_flag, range_flag, " + String.join(", ", duplicateColumns)
+                + " ORDER BY id) AS dup_rank FROM " + flagged + ") f";
     }
 }
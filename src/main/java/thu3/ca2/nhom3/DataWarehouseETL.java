@@ -1,5 +1,6 @@
 package thu3.ca2.nhom3;
 
+import com.dw.ConnectionPool;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -7,27 +8,28 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.*;
-import java.time.LocalDateTime;
 import java.util.*;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Properties;
-import java.util.stream.Collectors;
 
 public class DataWarehouseETL {
 
-	private static final String CONFIG_FILE = "config.properties";
+	private static final int INVALID_RECORD_BATCH_SIZE = 1000;
+	private static final String CONFIG_FILE = System.getProperty("etl.config", "config.properties");
 	private static String stagingDb;
+	private static boolean fullRebuild;
 
 	public static void main(String[] args) {
+		// --full-rebuild: bỏ qua mốc incremental, transform lại toàn bộ staging
+		fullRebuild = Arrays.asList(args).contains("--full-rebuild");
 		loadConfigurations();
 		ETLControlManager controlManager = new ETLControlManager();
 		int totalRecordsProcessed = 0;
 
-		try (Connection conn = DriverManager.getConnection(stagingDb)) {
+		try (Connection conn = ConnectionPool.getConnection(stagingDb)) {
 			// Bắt đầu công việc ETL
 			controlManager.startJob("Mobile_Data_ETL");
 
@@ -35,7 +37,15 @@ public class DataWarehouseETL {
 			totalRecordsProcessed = loadCSVToStaging(controlManager);
 
 			// Bước 2: Kiểm tra chất lượng dữ liệu và xóa bản ghi không hợp lệ
-			int invalidRecords = validateDataQuality("staging_mobile", conn, controlManager);
+			ETLControlManager.StepScope validationStep = controlManager.beginStep("STAGING_VALIDATION");
+			int invalidRecords;
+			try {
+				invalidRecords = validateDataQuality("staging_mobile", conn, controlManager);
+				validationStep.complete(invalidRecords);
+			} catch (Exception e) {
+				validationStep.fail(e);
+				throw e;
+			}
 			System.out.println("Total invalid records found and removed: " + invalidRecords);
 
 			// Bước 3: Chuyển đổi và load vào warehouse
@@ -48,6 +58,7 @@ public class DataWarehouseETL {
 			handleJobFailure(controlManager, totalRecordsProcessed, e);
 		} finally {
 			controlManager.close();
+			ConnectionPool.closeAll();
 		}
 	}
 
@@ -55,6 +66,7 @@ public class DataWarehouseETL {
 		try (InputStream input = new FileInputStream(CONFIG_FILE)) {
 			Properties props = new Properties();
 			props.load(input);
+			ConnectionPool.configure(props);
 			stagingDb = props.getProperty("staging.db.url");
 		} catch (IOException e) {
 			throw new RuntimeException("Failed to load configurations.", e);
@@ -63,139 +75,117 @@ public class DataWarehouseETL {
 
 	private static int loadCSVToStaging(ETLControlManager controlManager) throws SQLException {
 		int recordsLoaded = 0;
+		ETLControlManager.StepScope step = controlManager.beginStep("CSV_TO_STAGING");
 		try {
 			CSVLoader loader = new CSVLoader();
 			recordsLoaded = loader.loadCSVToStaging();
-			LocalDateTime startTime = LocalDateTime.now();
-			LocalDateTime endTime = LocalDateTime.now();
-			controlManager.logStep("CSV_TO_STAGING", startTime, endTime, "COMPLETED", recordsLoaded, null);
+			step.complete(recordsLoaded);
 		} catch (Exception e) {
-			LocalDateTime startTime = LocalDateTime.now();
-			LocalDateTime endTime = LocalDateTime.now();
-			controlManager.logStep("CSV_TO_STAGING", startTime, endTime, "FAILED", 0, e.getMessage());
+			step.fail(e);
 			throw e;
 		}
 		return recordsLoaded;
 	}
 
-	private static int validateDataQuality(String tableName, Connection conn, ETLControlManager controlManager)
+	static int validateDataQuality(String tableName, Connection conn, ETLControlManager controlManager)
 			throws SQLException, JsonProcessingException {
 		DataValidator validator = new DataValidator(conn);
-		int totalIssues = 0;
-
-		if (validator.isValidateNull()) {
-			int nullCount = validator.checkNullValues(tableName);
-			if (nullCount > 0) {
-				controlManager.logDataQualityCheck("STAGING_DATA_VALIDATION", tableName, nullCount, "NULL values found");
-				removeInvalidRecords(tableName, "NULL_CHECK", conn);
-				totalIssues += nullCount;
-			}
-		}
+		// Một lần quét cho mọi kiểm tra, số lỗi chi tiết theo từng cột
+		DataValidator.QualityReport report = validator.scan(tableName);
 
-		if (validator.isValidateRange()) {
-			int rangeCount = validator.checkRangeValues(tableName);
-			if (rangeCount > 0) {
-				controlManager.logDataQualityCheck("STAGING_DATA_VALIDATION", tableName, rangeCount, "Out of range values found");
-				removeInvalidRecords(tableName, "RANGE_CHECK", conn);
-				totalIssues += rangeCount;
+		for (Map.Entry<String, Long> entry : report.nullCounts().entrySet()) {
+			if (entry.getValue() > 0) {
+				controlManager.logDataQualityCheck("STAGING_DATA_VALIDATION", tableName, entry.getValue().intValue(),
+						"NULL values found in column " + entry.getKey());
 			}
 		}
-
-		if (validator.isValidateDuplicate()) {
-			int duplicateCount = validator.checkDuplicates(tableName);
-			if (duplicateCount > 0) {
-				controlManager.logDataQualityCheck("STAGING_DATA_VALIDATION", tableName, duplicateCount, "Duplicate records found");
-				removeInvalidRecords(tableName, "DUPLICATE_CHECK", conn);
-				totalIssues += duplicateCount;
+		for (Map.Entry<String, Long> entry : report.rangeCounts().entrySet()) {
+			if (entry.getValue() > 0) {
+				controlManager.logDataQualityCheck("STAGING_DATA_VALIDATION", tableName, entry.getValue().intValue(),
+						"Out of range values found in column " + entry.getKey());
 			}
 		}
+		if (report.duplicateGroups() > 0) {
+			controlManager.logDataQualityCheck("STAGING_DATA_VALIDATION", tableName, (int) report.duplicateGroups(),
+					"Duplicate records found on (" + String.join(", ", validator.getDuplicateColumns()) + "): "
+							+ report.duplicateRows() + " extra rows");
+		}
 
-		return totalIssues;
+		if (report.invalidRows() > 0) {
+			removeInvalidRecords(tableName, validator, conn);
+		}
+		System.out.println("Validated " + report.totalRows() + " rows of " + tableName + ": " + report.invalidRows() + " invalid");
+		return (int) (report.nullTotal() + report.rangeTotal() + report.duplicateGroups());
 	}
 
 
-	private static void removeInvalidRecords(String tableName, String reason, Connection conn) throws SQLException, JsonProcessingException {
-		DataValidator validator = new DataValidator(conn);
-		String selectInvalidSQL;
-		String deleteSQL;
-
-		switch (reason) {
-			case "NULL_CHECK" -> {
-				List<String> nullColumns = validator.getNullColumns();
-				if (nullColumns.isEmpty()) {
-					System.out.println("No NULL_CHECK columns defined in configuration. Skipping removal.");
-					return;
-				}
-				String nullConditions = nullColumns.stream()
-						.map(column -> column + " IS NULL")
-						.collect(Collectors.joining(" OR "));
-				selectInvalidSQL = "SELECT * FROM " + tableName + " WHERE " + nullConditions;
-				deleteSQL = "DELETE FROM " + tableName + " WHERE " + nullConditions;
-			}
-			case "RANGE_CHECK" -> {
-				List<String> rangeColumns = validator.getRangeColumns();
-				if (rangeColumns.isEmpty()) {
-					System.out.println("No RANGE_CHECK columns defined in configuration. Skipping removal.");
-					return;
-				}
-				String rangeConditions = rangeColumns.stream()
-						.map(column -> column + " < 0")
-						.collect(Collectors.joining(" OR "));
-				selectInvalidSQL = "SELECT * FROM " + tableName + " WHERE " + rangeConditions;
-				deleteSQL = "DELETE FROM " + tableName + " WHERE " + rangeConditions;
-			}
-			case "DUPLICATE_CHECK" -> {
-				List<String> duplicateColumns = validator.getDuplicateColumns();
-				if (duplicateColumns.isEmpty()) {
-					System.out.println("No DUPLICATE_CHECK columns defined in configuration. Skipping removal.");
-					return;
-				}
-				String groupByColumns = String.join(", ", duplicateColumns);
-				selectInvalidSQL = String.format("""
-                SELECT * 
-                FROM %s 
-                WHERE id NOT IN (
-                    SELECT MIN(id) 
-                    FROM %s 
-                    GROUP BY %s
-                )
-            """, tableName, tableName, groupByColumns);
-				deleteSQL = String.format("""
-                DELETE FROM %s 
-                WHERE id NOT IN (
-                    SELECT MIN(id) 
-                    FROM %s 
-                    GROUP BY %s
-                )
-            """, tableName, tableName, groupByColumns);
-			}
-			default -> throw new IllegalArgumentException("Invalid reason for removing records.");
-		}
+	// Chuyển mọi bản ghi không hợp lệ sang invalid_records rồi xóa khỏi bảng gốc, trong một transaction
+	private static void removeInvalidRecords(String tableName, DataValidator validator, Connection conn) throws SQLException, JsonProcessingException {
+		String insertSQL = "INSERT INTO invalid_records (table_name, invalid_record, reason) VALUES (?, ?, ?)";
+		String deleteSQL = "DELETE FROM " + tableName + " WHERE id = ?";
+		List<Long> ids = new ArrayList<>();
+		Map<String, Integer> removedByReason = new TreeMap<>();
 
-		// Di chuyển dữ liệu không hợp lệ sang bảng invalid_records
+		boolean autoCommit = conn.getAutoCommit();
+		conn.setAutoCommit(false);
 		try (Statement selectStmt = conn.createStatement();
-			 Statement deleteStmt = conn.createStatement();
-			 ResultSet rs = selectStmt.executeQuery(selectInvalidSQL)) {
-			while (rs.next()) {
-				String invalidRecord = extractRecordAsJson(rs); // Chuyển bản ghi thành JSON
-				String insertSQL = "INSERT INTO invalid_records (table_name, invalid_record, reason) VALUES (?, ?, ?)";
-				try (PreparedStatement insertStmt = conn.prepareStatement(insertSQL)) {
+			 PreparedStatement insertStmt = conn.prepareStatement(insertSQL)) {
+			try (ResultSet rs = selectStmt.executeQuery(validator.invalidRowsQuery(tableName))) {
+				// Bỏ các cột phụ của câu kiểm tra khi ghi bản ghi ra JSON
+				int recordColumns = rs.getMetaData().getColumnCount() - DataValidator.helperColumnCount();
+				int pending = 0;
+				while (rs.next()) {
+					String reason = rs.getString("dq_reason");
 					insertStmt.setString(1, tableName);
-					insertStmt.setString(2, invalidRecord);
+					insertStmt.setString(2, extractRecordAsJson(rs, recordColumns)); // Chuyển bản ghi thành JSON
 					insertStmt.setString(3, reason);
-					insertStmt.executeUpdate();
+					insertStmt.addBatch();
+					if (++pending == INVALID_RECORD_BATCH_SIZE) {
+						insertStmt.executeBatch();
+						pending = 0;
+					}
+					ids.add(rs.getLong("id"));
+					removedByReason.merge(reason, 1, Integer::sum);
+				}
+				if (pending > 0) {
+					insertStmt.executeBatch();
 				}
 			}
+
 			// Xóa bản ghi không hợp lệ khỏi bảng gốc
-			int rowsDeleted = deleteStmt.executeUpdate(deleteSQL);
-			System.out.println("Moved and removed " + rowsDeleted + " invalid records due to " + reason);
+			try (PreparedStatement deleteStmt = conn.prepareStatement(deleteSQL)) {
+				int pending = 0;
+				for (long id : ids) {
+					deleteStmt.setLong(1, id);
+					deleteStmt.addBatch();
+					if (++pending == INVALID_RECORD_BATCH_SIZE) {
+						deleteStmt.executeBatch();
+						pending = 0;
+					}
+				}
+				if (pending > 0) {
+					deleteStmt.executeBatch();
+				}
+			}
+			conn.commit();
+		} catch (SQLException | JsonProcessingException e) {
+			conn.rollback();
+			throw e;
+		} finally {
+			conn.setAutoCommit(autoCommit);
 		}
+		removedByReason.forEach((reason, count) ->
+				System.out.println("Moved and removed " + count + " invalid records due to " + reason));
 	}
 
 	// Helper: Chuyển ResultSet thành chuỗi JSON
-	private static String extractRecordAsJson(ResultSet rs) throws SQLException, JsonProcessingException {
+	static String extractRecordAsJson(ResultSet rs) throws SQLException, JsonProcessingException {
+		return extractRecordAsJson(rs, rs.getMetaData().getColumnCount());
+	}
+
+	// Chỉ lấy columnCount cột đầu tiên
+	static String extractRecordAsJson(ResultSet rs, int columnCount) throws SQLException, JsonProcessingException {
 		ResultSetMetaData metaData = rs.getMetaData();
-		int columnCount = metaData.getColumnCount();
 		Map<String, Object> recordMap = new HashMap<>();
 		for (int i = 1; i <= columnCount; i++) {
 			recordMap.put(metaData.getColumnName(i), rs.getObject(i));
@@ -206,16 +196,16 @@ public class DataWarehouseETL {
 
 
 	private static void transformAndLoadToWarehouse(ETLControlManager controlManager) throws SQLException {
+		ETLControlManager.StepScope step = controlManager.beginStep("TRANSFORM_TO_WAREHOUSE");
 		try {
 			DataTransformer transformer = new DataTransformer();
+			if (fullRebuild) {
+				transformer.setFullRebuild(true);
+			}
 			int recordsTransformed = transformer.transformData();
-			LocalDateTime startTime = LocalDateTime.now();
-			LocalDateTime endTime = LocalDateTime.now();
-			controlManager.logStep("TRANSFORM_TO_WAREHOUSE", startTime, endTime, "COMPLETED", recordsTransformed, null);
+			step.complete(recordsTransformed);
 		} catch (Exception e) {
-			LocalDateTime startTime = LocalDateTime.now();
-			LocalDateTime endTime = LocalDateTime.now();
-			controlManager.logStep("TRANSFORM_TO_WAREHOUSE", startTime, endTime, "FAILED", 0, e.getMessage());
+			step.fail(e);
 			throw e;
 		}
 	}
@@ -0,0 +1,167 @@
+package thu3.ca2.nhom3;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bộ nhớ đệm khóa thay thế (natural key → surrogate key) cho các bảng chiều, dùng thay getDimKey.
+// Lần tra đầu tiên vào một bảng chiều sẽ nạp toàn bộ bảng bằng một câu SELECT; sau đó mọi lần tra
+// đều nằm trong bộ nhớ. Mỗi bảng giữ tối đa maxEntries khóa (LRU), khóa bị loại thì tra lại từ DB.
+// Kết quả giống getDimKey: nhiều dòng cùng giá trị thì lấy khóa nhỏ nhất, không tìm thấy thì -1.
+// Giá trị được so sánh như collation mặc định của SQL Server (không phân biệt hoa thường, bỏ khoảng
+// trắng cuối), nên các cách viết khác nhau của cùng một giá trị dùng chung một khóa.
+// An toàn khi nhiều luồng dùng chung; mỗi luồng truyền kết nối warehouse của mình khi tra.
+public class DimensionKeyCache {
+	private final int maxEntries;
+	private final Map<String, Dimension> dimensions = new ConcurrentHashMap<>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	private class Dimension {
+		private final String tableName;
+		private final String columnName;
+		private final String keyColumn;
+		private final Map<String, Integer> keys;
+		private boolean loaded;
+
+		Dimension(String tableName, String columnName) throws SQLException {
+			this.tableName = tableName;
+			this.columnName = columnName;
+			this.keyColumn = keyColumn(tableName);
+			this.keys = new LinkedHashMap<>(1024, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+					if (size() > maxEntries) {
+						evictions.incrementAndGet();
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+
+		synchronized int get(Connection conn, String value) throws SQLException {
+			if (!loaded) {
+				load(conn);
+			}
+			String normalized = normalize(value);
+			Integer key = keys.get(normalized);
+			if (key != null) {
+				hits.incrementAndGet();
+				return key;
+			}
+			misses.incrementAndGet();
+			int found = query(conn, value);
+			if (found != -1) {
+				keys.put(normalized, found);
+			}
+			return found;
+		}
+
+		synchronized void prime(Map<String, Integer> allKeys) {
+			keys.clear();
+			allKeys.forEach((value, key) -> keys.merge(normalize(value), key, Math::min));
+			loaded = true;
+		}
+
+		private void load(Connection conn) throws SQLException {
+			String sql = "SELECT " + keyColumn + ", " + columnName + " FROM " + tableName + " ORDER BY " + keyColumn;
+			try (Statement stmt = conn.createStatement();
+				 ResultSet rs = stmt.executeQuery(sql)) {
+				while (rs.next()) {
+					String value = rs.getString(2);
+					if (value != null) {
+						keys.merge(normalize(value), rs.getInt(1), Math::min);
+					}
+				}
+			}
+			loaded = true;
+		}
+
+		private int query(Connection conn, String value) throws SQLException {
+			String sql = "SELECT MIN(" + keyColumn + ") FROM " + tableName + " WHERE " + columnName + " = ?";
+			try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+				pstmt.setString(1, value);
+				try (ResultSet rs = pstmt.executeQuery()) {
+					if (rs.next()) {
+						int key = rs.getInt(1);
+						return rs.wasNull() ? -1 : key;
+					}
+				}
+			}
+			return -1;
+		}
+	}
+
+	public DimensionKeyCache(int maxEntries) {
+		this.maxEntries = Math.max(1, maxEntries);
+	}
+
+	public int get(Connection conn, String tableName, String columnName, String value) throws SQLException {
+		// So sánh "= NULL" trong SQL không bao giờ đúng
+		if (value == null) {
+			return -1;
+		}
+		return dimension(tableName, columnName).get(conn, value);
+	}
+
+	// Nạp sẵn toàn bộ khóa của một bảng chiều (theo thứ tự khóa tăng dần), không cần đọc lại từ DB
+	public void prime(String tableName, String columnName, Map<String, Integer> allKeys) throws SQLException {
+		dimension(tableName, columnName).prime(allKeys);
+	}
+
+	private Dimension dimension(String tableName, String columnName) throws SQLException {
+		String id = tableName + "." + columnName;
+		Dimension dimension = dimensions.get(id);
+		if (dimension == null) {
+			Dimension created = new Dimension(tableName, columnName);
+			dimension = dimensions.putIfAbsent(id, created);
+			if (dimension == null) {
+				dimension = created;
+			}
+		}
+		return dimension;
+	}
+
+	// Như collation mặc định của SQL Server, giống DimensionLoader.memberKey và StagingMobileIndex
+	private static String normalize(String value) {
+		return value.stripTrailing().toLowerCase(Locale.ROOT);
+	}
+
+	static String keyColumn(String tableName) throws SQLException {
+		return switch (tableName) {
+			case "DimBrand" -> "BrandKey";
+			case "DimModel" -> "ModelKey";
+			case "DimSpecification" -> "SpecKey";
+			case "DimProcessor" -> "ProcessorKey";
+			case "DimCamera" -> "CameraKey";
+			case "DimOS" -> "OSKey";
+			default -> throw new SQLException("Invalid table name: " + tableName);
+		};
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	@Override
+	public String toString() {
+		return "Dimension key cache: " + getHits() + " hits, " + getMisses() + " misses, " + getEvictions() + " evictions";
+	}
+}
@@ -0,0 +1,173 @@
+package thu3.ca2.nhom3;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Nạp một bảng chiều theo hiệu tập hợp: đọc các thành viên đã có bằng một câu SELECT, so với các giá trị
+// DISTINCT của staging trong bộ nhớ, rồi thêm thành viên mới bằng batch trong một transaction.
+// Khóa của các dòng vừa thêm được đọc lại một lần (khóa > khóa lớn nhất trước đó) để nạp thẳng vào
+// DimensionKeyCache, cách này chạy được với mọi driver kể cả khi không trả generated keys cho batch.
+class DimensionLoader {
+	private static final int INSERT_BATCH_SIZE = 1000;
+
+	// Đọc một thành viên (theo thứ tự columns) từ dòng hiện tại của câu SELECT trên staging
+	@FunctionalInterface
+	interface MemberReader {
+		Object[] read(ResultSet rs) throws SQLException;
+	}
+
+	private final String tableName;
+	private final String keyColumn;
+	private final String lookupColumn;
+	private final String[] columns;
+	private final int[] types;
+
+	DimensionLoader(String tableName, String keyColumn, String lookupColumn, String[] columns, int[] types) {
+		this.tableName = tableName;
+		this.keyColumn = keyColumn;
+		this.lookupColumn = lookupColumn;
+		this.columns = columns;
+		this.types = types;
+	}
+
+	// Trả về số thành viên mới đã thêm; chỉ các dòng staging trong window được đọc
+	int load(Connection stagingConn, String stagingSQL, StagingWindow window, MemberReader reader,
+			 Connection warehouseConn, DimensionKeyCache cache) throws SQLException {
+		Set<List<Object>> members = new HashSet<>();
+		Map<String, Integer> lookupKeys = new LinkedHashMap<>();
+		int maxKey = readExisting(warehouseConn, members, lookupKeys);
+
+		List<Object[]> newMembers = new ArrayList<>();
+		try (PreparedStatement pstmt = stagingConn.prepareStatement(stagingSQL + window.where())) {
+			window.bind(pstmt);
+			try (ResultSet rs = pstmt.executeQuery()) {
+				while (rs.next()) {
+					Object[] member = reader.read(rs);
+					if (members.add(memberKey(member))) {
+						newMembers.add(member);
+					}
+				}
+			}
+		}
+		if (newMembers.isEmpty()) {
+			prime(cache, lookupKeys);
+			return 0;
+		}
+
+		insert(warehouseConn, newMembers);
+		readNewKeys(warehouseConn, maxKey, lookupKeys);
+		prime(cache, lookupKeys);
+		return newMembers.size();
+	}
+
+	private int readExisting(Connection warehouseConn, Set<List<Object>> members, Map<String, Integer> lookupKeys)
+			throws SQLException {
+		int lookupIndex = Arrays.asList(columns).indexOf(lookupColumn);
+		String sql = "SELECT " + keyColumn + ", " + String.join(", ", columns) + " FROM " + tableName + " ORDER BY " + keyColumn;
+		int maxKey = Integer.MIN_VALUE;
+		try (Statement stmt = warehouseConn.createStatement();
+			 ResultSet rs = stmt.executeQuery(sql)) {
+			while (rs.next()) {
+				int key = rs.getInt(1);
+				Object[] member = new Object[columns.length];
+				for (int i = 0; i < columns.length; i++) {
+					member[i] = readValue(rs, i + 2, types[i]);
+				}
+				members.add(memberKey(member));
+				String lookupValue = rs.getString(lookupIndex + 2);
+				if (lookupValue != null) {
+					lookupKeys.putIfAbsent(lookupValue, key);
+				}
+				maxKey = Math.max(maxKey, key);
+			}
+		}
+		return maxKey;
+	}
+
+	private void insert(Connection warehouseConn, List<Object[]> newMembers) throws SQLException {
+		String sql = "INSERT INTO " + tableName + " (" + String.join(", ", columns) + ") VALUES ("
+				+ Arrays.stream(columns).map(c -> "?").collect(Collectors.joining(", ")) + ")";
+		boolean autoCommit = warehouseConn.getAutoCommit();
+		warehouseConn.setAutoCommit(false);
+		try (PreparedStatement insertStmt = warehouseConn.prepareStatement(sql)) {
+			int pending = 0;
+			for (Object[] member : newMembers) {
+				for (int i = 0; i < columns.length; i++) {
+					if (member[i] == null) {
+						insertStmt.setNull(i + 1, types[i]);
+					} else {
+						insertStmt.setObject(i + 1, member[i], types[i]);
+					}
+				}
+				insertStmt.addBatch();
+				if (++pending == INSERT_BATCH_SIZE) {
+					insertStmt.executeBatch();
+					pending = 0;
+				}
+			}
+			if (pending > 0) {
+				insertStmt.executeBatch();
+			}
+			warehouseConn.commit();
+		} catch (SQLException e) {
+			warehouseConn.rollback();
+			throw e;
+		} finally {
+			warehouseConn.setAutoCommit(autoCommit);
+		}
+	}
+
+	private void readNewKeys(Connection warehouseConn, int maxKey, Map<String, Integer> lookupKeys) throws SQLException {
+		String sql = "SELECT " + keyColumn + ", " + lookupColumn + " FROM " + tableName
+				+ " WHERE " + keyColumn + " > ? ORDER BY " + keyColumn;
+		try (PreparedStatement pstmt = warehouseConn.prepareStatement(sql)) {
+			pstmt.setInt(1, maxKey);
+			try (ResultSet rs = pstmt.executeQuery()) {
+				while (rs.next()) {
+					String lookupValue = rs.getString(2);
+					if (lookupValue != null) {
+						lookupKeys.putIfAbsent(lookupValue, rs.getInt(1));
+					}
+				}
+			}
+		}
+	}
+
+	private void prime(DimensionKeyCache cache, Map<String, Integer> lookupKeys) throws SQLException {
+		if (cache != null) {
+			cache.prime(tableName, lookupColumn, lookupKeys);
+		}
+	}
+
+	// Đọc giống cách các câu SELECT trên staging đọc (getInt/getDouble trả 0 khi NULL)
+	private static Object readValue(ResultSet rs, int index, int type) throws SQLException {
+		return switch (type) {
+			case Types.INTEGER -> rs.getInt(index);
+			case Types.DOUBLE -> rs.getDouble(index);
+			case Types.BIT -> rs.getBoolean(index);
+			default -> rs.getString(index);
+		};
+	}
+
+	// So sánh chuỗi không phân biệt hoa thường và bỏ khoảng trắng cuối, như collation mặc định của SQL Server
+	private static List<Object> memberKey(Object[] member) {
+		Object[] key = new Object[member.length];
+		for (int i = 0; i < member.length; i++) {
+			key[i] = member[i] instanceof String s ? s.stripTrailing().toLowerCase(Locale.ROOT) : member[i];
+		}
+		return Arrays.asList(key);
+	}
+}
@@ -1,17 +1,90 @@
 package thu3.ca2.nhom3;
 
+import com.dw.ConnectionPool;
+
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
 import java.sql.*;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+// Step and data quality rows are buffered and written in batches by a single background thread,
+// which is also the only thread that touches the control connection. endJob() and close() wait
+// until everything buffered has been written.
 public class ETLControlManager {
-	private static final String CONFIG_FILE = "config.properties";
+	private static final String CONFIG_FILE = System.getProperty("etl.config", "config.properties");
+	private static final OperatingSystemMXBean OS_MX_BEAN = ManagementFactory.getOperatingSystemMXBean();
 	private static String controlDbUrl;
+	private static long flushIntervalMs;
+	private static int flushBatchSize;
 	private Connection controlConn;
-	private int currentJobId;
+	private volatile int currentJobId;
+
+	private record StepRow(int jobId, String stepName, LocalDateTime startTime, LocalDateTime endTime, String status,
+						   int recordsProcessed, String errorMessage, long cpuTimeMs) {
+	}
+
+	private record QualityRow(int jobId, String checkName, LocalDateTime checkTime, String tableName,
+							  int failedRecords, String errorDetails) {
+	}
+
+	private final Queue<StepRow> pendingSteps = new ConcurrentLinkedQueue<>();
+	private final Queue<QualityRow> pendingChecks = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pendingCount = new AtomicInteger();
+	private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "etl-control-writer");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private Boolean hasCpuTimeColumn;
+
+	// Measures one ETL step: wall time, CPU time and the rows it processed. Steps fan out to worker
+	// threads (dimension loads, file processing), so CPU is taken for the whole process rather than the
+	// calling thread; steps run one at a time, but GC, JIT and the control writer are included too.
+	public class StepScope {
+		private final String stepName;
+		private final LocalDateTime startTime = LocalDateTime.now();
+		private final long startNanos = System.nanoTime();
+		private final long startCpuNanos = processCpuTime();
+		private boolean ended;
+
+		private StepScope(String stepName) {
+			this.stepName = stepName;
+		}
+
+		public void complete(int recordsProcessed) {
+			end("COMPLETED", recordsProcessed, null);
+		}
+
+		public void fail(Exception e) {
+			end("FAILED", 0, e.getMessage());
+		}
+
+		private void end(String status, int recordsProcessed, String errorMessage) {
+			if (ended) {
+				return;
+			}
+			ended = true;
+			long wallMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+			long cpuMs = startCpuNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(processCpuTime() - startCpuNanos);
+			System.out.println("Step " + stepName + " " + status + ": " + recordsProcessed + " records, wall "
+					+ wallMs + " ms, process cpu " + (cpuMs < 0 ? "n/a" : cpuMs + " ms"));
+			enqueue(pendingSteps, new StepRow(currentJobId, stepName, startTime, LocalDateTime.now(),
+					status, recordsProcessed, errorMessage, cpuMs));
+		}
+	}
 
 	// Constructor
 	public ETLControlManager() {
@@ -24,7 +97,10 @@ public class ETLControlManager {
 		try (InputStream input = new FileInputStream(CONFIG_FILE)) {
 			Properties props = new Properties();
 			props.load(input);
+			ConnectionPool.configure(props);
 			controlDbUrl = props.getProperty("control.db.url");
+			flushIntervalMs = Long.parseLong(props.getProperty("etl.control.flush.interval.ms", "2000"));
+			flushBatchSize = Integer.parseInt(props.getProperty("etl.control.batch.size", "100"));
 		} catch (IOException e) {
 			throw new RuntimeException("Failed to load configurations from " + CONFIG_FILE, e);
 		}
@@ -33,14 +109,31 @@ public class ETLControlManager {
 	// Initialize connection to the control database
 	private void initializeConnection() {
 		try {
-			controlConn = DriverManager.getConnection(controlDbUrl);
+			controlConn = ConnectionPool.getConnection(controlDbUrl);
 		} catch (SQLException e) {
 			throw new RuntimeException("Failed to connect to the control database: " + controlDbUrl, e);
 		}
+		writer.scheduleWithFixedDelay(this::flushInBackground, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+	}
+
+	// -1 when the JVM does not expose process CPU time
+	private static long processCpuTime() {
+		if (OS_MX_BEAN instanceof com.sun.management.OperatingSystemMXBean os) {
+			return os.getProcessCpuTime();
+		}
+		return -1;
+	}
+
+	public StepScope beginStep(String stepName) {
+		return new StepScope(stepName);
 	}
 
 	// Start an ETL job and record its metadata
 	public void startJob(String jobName) {
+		runOnWriter(() -> insertJob(jobName));
+	}
+
+	private void insertJob(String jobName) {
 		String sql = """
             INSERT INTO etl_job_log (job_name, start_time, status) 
             VALUES (?, ?, ?)
@@ -61,50 +154,145 @@ public class ETLControlManager {
 		}
 	}
 
-	// Log an individual ETL step
+	// Log an individual ETL step (buffered; prefer beginStep for measured timings)
 	public void logStep(String stepName, LocalDateTime startTime, LocalDateTime endTime, String status,
 						int recordsProcessed, String errorMessage) {
-		String sql = """
+		enqueue(pendingSteps, new StepRow(currentJobId, stepName, startTime, endTime, status, recordsProcessed,
+				errorMessage, -1));
+	}
+
+	// Log a data quality check (buffered)
+	public void logDataQualityCheck(String checkName, String tableName, int failedRecords, String errorDetails) {
+		enqueue(pendingChecks, new QualityRow(currentJobId, checkName, LocalDateTime.now(), tableName, failedRecords,
+				errorDetails));
+	}
+
+	private <T> void enqueue(Queue<T> queue, T row) {
+		queue.add(row);
+		if (pendingCount.incrementAndGet() == flushBatchSize) {
+			writer.execute(this::flushInBackground);
+		}
+	}
+
+	private void flushInBackground() {
+		try {
+			writePending();
+		} catch (SQLException e) {
+			System.err.println("Failed to write ETL control log: " + e.getMessage());
+		}
+	}
+
+	// Runs on the writer thread only
+	private void writePending() throws SQLException {
+		List<StepRow> steps = drain(pendingSteps);
+		List<QualityRow> checks = drain(pendingChecks);
+		if (!steps.isEmpty()) {
+			writeSteps(steps);
+		}
+		if (!checks.isEmpty()) {
+			writeChecks(checks);
+		}
+	}
+
+	private <T> List<T> drain(Queue<T> queue) {
+		List<T> rows = new ArrayList<>();
+		for (T row; (row = queue.poll()) != null; ) {
+			rows.add(row);
+			pendingCount.decrementAndGet();
+		}
+		return rows;
+	}
+
+	private void writeSteps(List<StepRow> steps) throws SQLException {
+		// cpu_time_ms is optional so that older control databases keep working
+		if (hasCpuTimeColumn == null) {
+			try (ResultSet rs = controlConn.getMetaData().getColumns(controlConn.getCatalog(), null, "etl_step_log", "cpu_time_ms")) {
+				hasCpuTimeColumn = rs.next();
+			}
+		}
+		String sql = hasCpuTimeColumn ? """
+            INSERT INTO etl_step_log 
+            (job_id, step_name, start_time, end_time, status, records_processed, error_message, cpu_time_ms) 
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+        """ : """
             INSERT INTO etl_step_log 
             (job_id, step_name, start_time, end_time, status, records_processed, error_message) 
             VALUES (?, ?, ?, ?, ?, ?, ?)
         """;
 		try (PreparedStatement pstmt = controlConn.prepareStatement(sql)) {
-			pstmt.setInt(1, currentJobId);
-			pstmt.setString(2, stepName);
-			pstmt.setTimestamp(3, Timestamp.valueOf(startTime));
-			pstmt.setTimestamp(4, Timestamp.valueOf(endTime));
-			pstmt.setString(5, status);
-			pstmt.setInt(6, recordsProcessed);
-			pstmt.setString(7, errorMessage);
-			pstmt.executeUpdate();
-		} catch (SQLException e) {
-			throw new RuntimeException("Failed to log ETL step: " + stepName, e);
+			for (StepRow step : steps) {
+				pstmt.setInt(1, step.jobId());
+				pstmt.setString(2, step.stepName());
+				pstmt.setTimestamp(3, Timestamp.valueOf(step.startTime()));
+				pstmt.setTimestamp(4, Timestamp.valueOf(step.endTime()));
+				pstmt.setString(5, step.status());
+				pstmt.setInt(6, step.recordsProcessed());
+				pstmt.setString(7, step.errorMessage());
+				if (hasCpuTimeColumn) {
+					if (step.cpuTimeMs() < 0) {
+						pstmt.setNull(8, Types.BIGINT);
+					} else {
+						pstmt.setLong(8, step.cpuTimeMs());
+					}
+				}
+				pstmt.addBatch();
+			}
+			pstmt.executeBatch();
 		}
 	}
 
-	// Log a data quality check
-	public void logDataQualityCheck(String checkName, String tableName, int failedRecords, String errorDetails) {
+	private void writeChecks(List<QualityRow> checks) throws SQLException {
 		String sql = """
             INSERT INTO data_quality_log 
             (job_id, check_name, check_time, table_name, failed_records, error_details) 
             VALUES (?, ?, ?, ?, ?, ?)
         """;
 		try (PreparedStatement pstmt = controlConn.prepareStatement(sql)) {
-			pstmt.setInt(1, currentJobId);
-			pstmt.setString(2, checkName);
-			pstmt.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
-			pstmt.setString(4, tableName);
-			pstmt.setInt(5, failedRecords);
-			pstmt.setString(6, errorDetails);
-			pstmt.executeUpdate();
-		} catch (SQLException e) {
-			throw new RuntimeException("Failed to log data quality check: " + checkName, e);
+			for (QualityRow check : checks) {
+				pstmt.setInt(1, check.jobId());
+				pstmt.setString(2, check.checkName());
+				pstmt.setTimestamp(3, Timestamp.valueOf(check.checkTime()));
+				pstmt.setString(4, check.tableName());
+				pstmt.setInt(5, check.failedRecords());
+				pstmt.setString(6, check.errorDetails());
+				pstmt.addBatch();
+			}
+			pstmt.executeBatch();
 		}
 	}
 
-	// End an ETL job with a status
+	// Write everything buffered so far and wait for it
+	public void flush() {
+		runOnWriter(() -> {
+			try {
+				writePending();
+			} catch (SQLException e) {
+				throw new RuntimeException("Failed to write ETL control log", e);
+			}
+		});
+	}
+
+	private void runOnWriter(Runnable task) {
+		try {
+			writer.submit(task).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while writing ETL control log", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	// End an ETL job with a status; buffered steps and checks are written first
 	public void endJob(String status, int recordsProcessed, String errorMessage) {
+		flush();
+		runOnWriter(() -> updateJob(status, recordsProcessed, errorMessage));
+	}
+
+	private void updateJob(String status, int recordsProcessed, String errorMessage) {
 		String sql = """
             UPDATE etl_job_log 
             SET end_time = ?, status = ?, records_processed = ?, error_message = ? 
@@ -124,6 +312,19 @@ public class ETLControlManager {
 
 	// Close the connection to the control database
 	public void close() {
+		if (!writer.isShutdown()) {
+			try {
+				flush();
+			} catch (RuntimeException e) {
+				System.err.println("Failed to flush ETL control log: " + e.getMessage());
+			}
+			writer.shutdown();
+			try {
+				writer.awaitTermination(30, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
 		try {
 			if (controlConn != null && !controlConn.isClosed()) {
 				controlConn.close();
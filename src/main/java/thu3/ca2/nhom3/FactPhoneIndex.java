@@ -0,0 +1,136 @@
+package thu3.ca2.nhom3;
+
+// Bảng băm địa chỉ mở cho FactPhone: (ModelKey, SpecKey, ProcessorKey, CameraKey, OSKey) → (PhoneKey, Price).
+// Khóa và giá trị nằm trong mảng kiểu nguyên thủy nên mỗi dòng chỉ tốn khoảng 40 byte, không có object.
+class FactPhoneIndex {
+	// Trạng thái của một ô
+	static final byte EMPTY = 0;
+	static final byte EXISTING = 1;         // dòng đã có trong FactPhone, giá chưa đổi
+	static final byte UPDATED = 2;          // dòng đã có, giá đã đổi trong lần nạp này
+	static final byte NEW = 3;              // dòng mới, chưa được INSERT
+	static final byte NEW_UPDATED = 4;      // dòng mới mà giá đã đổi sau lần xuất hiện đầu tiên
+	static final byte INSERTED = 5;         // dòng mới đã INSERT sớm (pipeline), chưa commit
+	static final byte INSERTED_UPDATED = 6; // dòng mới đã INSERT sớm, giá đổi sau lần xuất hiện đầu tiên
+
+	private static final int KEY_WIDTH = 5;
+
+	private int[] keys;
+	private int[] phoneKeys;
+	private double[] prices;
+	private byte[] states;
+	private int mask;
+	private int size;
+
+	FactPhoneIndex(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity * KEY_WIDTH];
+		phoneKeys = new int[capacity];
+		prices = new double[capacity];
+		states = new byte[capacity];
+		mask = capacity - 1;
+	}
+
+	// Trả về ô chứa khóa, hoặc -1 nếu chưa có
+	int find(int modelKey, int specKey, int processorKey, int cameraKey, int osKey) {
+		int slot = hash(modelKey, specKey, processorKey, cameraKey, osKey) & mask;
+		while (states[slot] != EMPTY) {
+			if (matches(slot, modelKey, specKey, processorKey, cameraKey, osKey)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	// Thêm khóa chưa có; trả về ô của nó
+	int add(int modelKey, int specKey, int processorKey, int cameraKey, int osKey, int phoneKey, double price, byte state) {
+		if ((size + 1) * 2 > states.length) {
+			grow();
+		}
+		int slot = hash(modelKey, specKey, processorKey, cameraKey, osKey) & mask;
+		while (states[slot] != EMPTY) {
+			slot = (slot + 1) & mask;
+		}
+		int base = slot * KEY_WIDTH;
+		keys[base] = modelKey;
+		keys[base + 1] = specKey;
+		keys[base + 2] = processorKey;
+		keys[base + 3] = cameraKey;
+		keys[base + 4] = osKey;
+		phoneKeys[slot] = phoneKey;
+		prices[slot] = price;
+		states[slot] = state;
+		size++;
+		return slot;
+	}
+
+	int capacity() {
+		return states.length;
+	}
+
+	int size() {
+		return size;
+	}
+
+	byte state(int slot) {
+		return states[slot];
+	}
+
+	void setState(int slot, byte state) {
+		states[slot] = state;
+	}
+
+	int phoneKey(int slot) {
+		return phoneKeys[slot];
+	}
+
+	double price(int slot) {
+		return prices[slot];
+	}
+
+	void setPrice(int slot, double price) {
+		prices[slot] = price;
+	}
+
+	// Khóa chiều thứ i (0..4) của ô
+	int key(int slot, int i) {
+		return keys[slot * KEY_WIDTH + i];
+	}
+
+	private boolean matches(int slot, int modelKey, int specKey, int processorKey, int cameraKey, int osKey) {
+		int base = slot * KEY_WIDTH;
+		return keys[base] == modelKey && keys[base + 1] == specKey && keys[base + 2] == processorKey
+				&& keys[base + 3] == cameraKey && keys[base + 4] == osKey;
+	}
+
+	private void grow() {
+		int[] oldKeys = keys;
+		int[] oldPhoneKeys = phoneKeys;
+		double[] oldPrices = prices;
+		byte[] oldStates = states;
+		allocate(oldStates.length * 2);
+		size = 0;
+		for (int slot = 0; slot < oldStates.length; slot++) {
+			if (oldStates[slot] != EMPTY) {
+				int base = slot * KEY_WIDTH;
+				add(oldKeys[base], oldKeys[base + 1], oldKeys[base + 2], oldKeys[base + 3], oldKeys[base + 4],
+						oldPhoneKeys[slot], oldPrices[slot], oldStates[slot]);
+			}
+		}
+	}
+
+	static int hash(int modelKey, int specKey, int processorKey, int cameraKey, int osKey) {
+		int h = modelKey;
+		h = h * 0x9E3779B1 + specKey;
+		h = h * 0x9E3779B1 + processorKey;
+		h = h * 0x9E3779B1 + cameraKey;
+		h = h * 0x9E3779B1 + osKey;
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		return h ^ (h >>> 13);
+	}
+}
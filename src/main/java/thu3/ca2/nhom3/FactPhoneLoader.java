@@ -0,0 +1,428 @@
+package thu3.ca2.nhom3;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Nạp FactPhone kiểu hash join: đọc toàn bộ FactPhone vào FactPhoneIndex một lần, phân loại từng dòng
+// staging trong bộ nhớ (thêm mới / đổi giá / không đổi), rồi ghi INSERT, UPDATE và fact_price_update_log
+// theo batch trong một transaction. Kết quả giống cách kiểm tra từng dòng cũ: một khóa xuất hiện nhiều lần
+// thì giữ giá cuối cùng và mỗi lần đổi giá có một dòng log.
+// Khi chia partition, mỗi loader chỉ giữ các dòng có ABS(ModelKey) % partitions = partition. ModelKey là một
+// phần của khóa tự nhiên nên hai partition không bao giờ chạm cùng một dòng FactPhone.
+class FactPhoneLoader {
+	private static final String SELECT_INDEX_SQL =
+			"SELECT PhoneKey, ModelKey, SpecKey, ProcessorKey, CameraKey, OSKey, Price FROM FactPhone";
+	private static final String SELECT_NEW_KEYS_SQL =
+			"SELECT PhoneKey, ModelKey, SpecKey, ProcessorKey, CameraKey, OSKey FROM FactPhone WHERE PhoneKey > ?";
+	private static final String INSERT_SQL = "INSERT INTO FactPhone (ModelKey, SpecKey, ProcessorKey, CameraKey, OSKey, Price, CreatedDate, UpdatedDate) VALUES (?, ?, ?, ?, ?, ?, GETDATE(), NULL)";
+	private static final String INSERT_UPDATED_SQL = "INSERT INTO FactPhone (ModelKey, SpecKey, ProcessorKey, CameraKey, OSKey, Price, CreatedDate, UpdatedDate) VALUES (?, ?, ?, ?, ?, ?, GETDATE(), GETDATE())";
+	private static final String UPDATE_SQL = "UPDATE FactPhone SET Price = ?, UpdatedDate = GETDATE() WHERE PhoneKey = ?";
+	private static final String LOG_SQL = "INSERT INTO fact_price_update_log (fact_id, old_price, new_price, updated_at) VALUES (?, ?, ?, GETDATE())";
+
+	private final int batchSize;
+	private final String partitionFilter;
+	private FactPhoneIndex index;
+	private int maxPhoneKey = Integer.MIN_VALUE;
+	private long existingRows;
+
+	// Dòng mới chưa có PhoneKey được đánh số -(seq + 1); newPhoneKeys[seq] là khóa sau khi INSERT
+	private int newCount;
+	private int[] newPhoneKeys = new int[0];
+
+	// Mỗi lần đổi giá: PhoneKey (hoặc số thứ tự dòng mới), giá cũ, giá mới
+	private int logCount;
+	private int[] logPhoneKeys = new int[1024];
+	private double[] logOldPrices = new double[1024];
+	private double[] logNewPrices = new double[1024];
+
+	// Ghi dần (pipeline): dòng mới được INSERT theo batch ngay trong lúc đọc staging, trên kết nối riêng của
+	// loader và trong một transaction mở tới finish(). pendingKeys giữ khóa của các dòng mới chưa gom thành
+	// batch; batch đủ dòng nằm trong readyBatches chờ flushReady() ghi ngoài khóa của add().
+	// Thứ tự khóa: flushLock rồi tới this.
+	private record PendingBatch(int[] keys, double[] prices, boolean[] updated) {
+	}
+
+	private final ReentrantLock flushLock = new ReentrantLock();
+	private final ArrayDeque<PendingBatch> readyBatches = new ArrayDeque<>();
+	private Connection streamConn;
+	private int[] pendingKeys;
+	private int pendingCount;
+
+	FactPhoneLoader(int batchSize) {
+		this(batchSize, 1, 0);
+	}
+
+	FactPhoneLoader(int batchSize, int partitions, int partition) {
+		this.batchSize = Math.max(1, batchSize);
+		this.partitionFilter = partitions > 1 ? "ABS(ModelKey) % " + partitions + " = " + partition : null;
+	}
+
+	// Cùng công thức với điều kiện partition trong SQL
+	static int partitionOf(int modelKey, int partitions) {
+		return Math.abs(modelKey) % partitions;
+	}
+
+	void loadIndex(Connection warehouseConn) throws SQLException {
+		index = new FactPhoneIndex(1024);
+		maxPhoneKey = Integer.MIN_VALUE;
+		existingRows = 0;
+		String sql = SELECT_INDEX_SQL + (partitionFilter != null ? " WHERE " + partitionFilter : "") + " ORDER BY PhoneKey";
+		try (Statement stmt = warehouseConn.createStatement();
+			 ResultSet rs = stmt.executeQuery(sql)) {
+			while (rs.next()) {
+				int phoneKey = rs.getInt(1);
+				int modelKey = rs.getInt(2);
+				int specKey = rs.getInt(3);
+				int processorKey = rs.getInt(4);
+				int cameraKey = rs.getInt(5);
+				int osKey = rs.getInt(6);
+				// Trùng khóa thì giữ dòng có PhoneKey nhỏ nhất, như câu kiểm tra cũ
+				if (index.find(modelKey, specKey, processorKey, cameraKey, osKey) < 0) {
+					index.add(modelKey, specKey, processorKey, cameraKey, osKey, phoneKey, rs.getDouble(7), FactPhoneIndex.EXISTING);
+				}
+				maxPhoneKey = Math.max(maxPhoneKey, phoneKey);
+				existingRows++;
+			}
+		}
+	}
+
+	// Số dòng FactPhone (của partition này) lúc nạp index
+	long existingRows() {
+		return existingRows;
+	}
+
+	// Bắt đầu ghi dần trên kết nối riêng; loader đóng kết nối này ở finish() hoặc abortStreaming()
+	void beginStreaming(Connection conn) throws SQLException {
+		conn.setAutoCommit(false);
+		streamConn = conn;
+		pendingKeys = new int[batchSize * 5];
+		pendingCount = 0;
+	}
+
+	// Phân loại một dòng staging trong bộ nhớ. Pipeline gọi theo đúng thứ tự đọc staging, nên giá cuối cùng
+	// và thứ tự log đổi giá giống cách đọc tuần tự.
+	synchronized void add(int modelKey, int specKey, int processorKey, int cameraKey, int osKey, double price) {
+		int slot = index.find(modelKey, specKey, processorKey, cameraKey, osKey);
+		if (slot < 0) {
+			if (newCount == newPhoneKeys.length) {
+				newPhoneKeys = Arrays.copyOf(newPhoneKeys, Math.max(1024, newCount * 2));
+			}
+			index.add(modelKey, specKey, processorKey, cameraKey, osKey, -(newCount + 1), price, FactPhoneIndex.NEW);
+			newPhoneKeys[newCount++] = -1;
+			if (streamConn != null) {
+				addPending(modelKey, specKey, processorKey, cameraKey, osKey);
+			}
+			return;
+		}
+
+		double oldPrice = index.price(slot);
+		if (oldPrice == price) {
+			return;
+		}
+		index.setPrice(slot, price);
+		index.setState(slot, switch (index.state(slot)) {
+			case FactPhoneIndex.NEW, FactPhoneIndex.NEW_UPDATED -> FactPhoneIndex.NEW_UPDATED;
+			case FactPhoneIndex.INSERTED, FactPhoneIndex.INSERTED_UPDATED -> FactPhoneIndex.INSERTED_UPDATED;
+			default -> FactPhoneIndex.UPDATED;
+		});
+		addLog(index.phoneKey(slot), oldPrice, price);
+	}
+
+	private void addPending(int modelKey, int specKey, int processorKey, int cameraKey, int osKey) {
+		int base = pendingCount * 5;
+		pendingKeys[base] = modelKey;
+		pendingKeys[base + 1] = specKey;
+		pendingKeys[base + 2] = processorKey;
+		pendingKeys[base + 3] = cameraKey;
+		pendingKeys[base + 4] = osKey;
+		if (++pendingCount == batchSize) {
+			handOffPending();
+		}
+	}
+
+	// Chụp giá và trạng thái hiện tại của batch để flushReady() ghi mà không cần đọc index
+	private void handOffPending() {
+		double[] prices = new double[pendingCount];
+		boolean[] updated = new boolean[pendingCount];
+		for (int i = 0; i < pendingCount; i++) {
+			int slot = findPending(pendingKeys, i);
+			prices[i] = index.price(slot);
+			updated[i] = index.state(slot) == FactPhoneIndex.NEW_UPDATED;
+		}
+		readyBatches.add(new PendingBatch(pendingKeys, prices, updated));
+		pendingKeys = new int[batchSize * 5];
+		pendingCount = 0;
+	}
+
+	private int findPending(int[] keys, int i) {
+		int base = i * 5;
+		return index.find(keys[base], keys[base + 1], keys[base + 2], keys[base + 3], keys[base + 4]);
+	}
+
+	// INSERT các batch dòng mới đã gom đủ. Chạy ngoài khóa của add() nên các writer khác vẫn phân loại tiếp
+	// trong lúc batch đang chờ database; nếu một luồng khác đang ghi thì để luồng đó ghi luôn.
+	// Giá đổi sau khi INSERT sẽ thành UPDATE lúc finish(). Lỗi thì rollback phần đã ghi dần và để finish()
+	// INSERT lại tất cả như khi không dùng pipeline.
+	void flushReady() {
+		if (!flushLock.tryLock()) {
+			return;
+		}
+		try {
+			PendingBatch batch;
+			while ((batch = nextReadyBatch()) != null) {
+				try {
+					executeBatch(batch);
+				} catch (SQLException e) {
+					System.err.println("Streaming FactPhone insert failed, inserting at commit instead: " + e.getMessage());
+					abortStreaming();
+					return;
+				}
+				markInserted(batch);
+			}
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	private synchronized PendingBatch nextReadyBatch() {
+		return streamConn == null ? null : readyBatches.poll();
+	}
+
+	private void executeBatch(PendingBatch batch) throws SQLException {
+		try (PreparedStatement insertStmt = streamConn.prepareStatement(INSERT_SQL);
+			 PreparedStatement insertUpdatedStmt = streamConn.prepareStatement(INSERT_UPDATED_SQL)) {
+			boolean hasNew = false;
+			boolean hasUpdated = false;
+			for (int i = 0; i < batch.prices().length; i++) {
+				PreparedStatement stmt = batch.updated()[i] ? insertUpdatedStmt : insertStmt;
+				for (int k = 0; k < 5; k++) {
+					stmt.setInt(k + 1, batch.keys()[i * 5 + k]);
+				}
+				stmt.setDouble(6, batch.prices()[i]);
+				stmt.addBatch();
+				hasNew |= !batch.updated()[i];
+				hasUpdated |= batch.updated()[i];
+			}
+			if (hasNew) {
+				insertStmt.executeBatch();
+			}
+			if (hasUpdated) {
+				insertUpdatedStmt.executeBatch();
+			}
+		}
+	}
+
+	// Giá đã đổi trong lúc batch đang ghi thì trạng thái là NEW_UPDATED và finish() sẽ UPDATE lại
+	private synchronized void markInserted(PendingBatch batch) {
+		for (int i = 0; i < batch.prices().length; i++) {
+			int slot = findPending(batch.keys(), i);
+			index.setState(slot, index.state(slot) == FactPhoneIndex.NEW
+					? FactPhoneIndex.INSERTED : FactPhoneIndex.INSERTED_UPDATED);
+		}
+	}
+
+	// Bỏ phần đã ghi dần: rollback, trả kết nối và đưa các dòng đã INSERT sớm về trạng thái dòng mới
+	void abortStreaming() {
+		flushLock.lock();
+		try {
+			synchronized (this) {
+				if (streamConn == null) {
+					return;
+				}
+				try {
+					streamConn.rollback();
+				} catch (SQLException e) {
+					System.err.println("Rollback of streamed FactPhone rows failed: " + e.getMessage());
+				}
+				closeStream();
+				resetInserted();
+			}
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	private void closeStream() {
+		try {
+			streamConn.close();
+		} catch (SQLException e) {
+			System.err.println("Error closing FactPhone stream connection: " + e.getMessage());
+		}
+		streamConn = null;
+		pendingKeys = null;
+		pendingCount = 0;
+		readyBatches.clear(); // các dòng chưa ghi vẫn là dòng mới, finish() sẽ INSERT
+	}
+
+	private void resetInserted() {
+		for (int slot = 0; slot < index.capacity(); slot++) {
+			byte state = index.state(slot);
+			if (state == FactPhoneIndex.INSERTED) {
+				index.setState(slot, FactPhoneIndex.NEW);
+			} else if (state == FactPhoneIndex.INSERTED_UPDATED) {
+				index.setState(slot, FactPhoneIndex.NEW_UPDATED);
+			}
+		}
+	}
+
+	private void addLog(int phoneKey, double oldPrice, double newPrice) {
+		if (logCount == logPhoneKeys.length) {
+			logPhoneKeys = Arrays.copyOf(logPhoneKeys, logCount * 2);
+			logOldPrices = Arrays.copyOf(logOldPrices, logCount * 2);
+			logNewPrices = Arrays.copyOf(logNewPrices, logCount * 2);
+		}
+		logPhoneKeys[logCount] = phoneKey;
+		logOldPrices[logCount] = oldPrice;
+		logNewPrices[logCount] = newPrice;
+		logCount++;
+	}
+
+	// Ghi mọi thay đổi trong một transaction; trả về số dòng đã thêm. Đang ghi dần thì transaction đó
+	// nằm trên kết nối riêng của loader và warehouseConn không được dùng.
+	// Lỗi thì rollback và giữ nguyên trạng thái trong bộ nhớ, nên có thể gọi lại trên một kết nối khác.
+	int finish(Connection conn) throws SQLException {
+		flushLock.lock();
+		try {
+			return commitChanges(conn);
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	private synchronized int commitChanges(Connection conn) throws SQLException {
+		boolean streaming = streamConn != null;
+		Connection warehouseConn = streaming ? streamConn : conn;
+		boolean autoCommit = streaming || warehouseConn.getAutoCommit();
+		warehouseConn.setAutoCommit(false);
+		try {
+			insertNewRows(warehouseConn);
+			if (newCount > 0) {
+				readNewPhoneKeys(warehouseConn);
+			}
+			updatePrices(warehouseConn);
+			writeLogs(warehouseConn);
+			warehouseConn.commit();
+		} catch (SQLException e) {
+			Arrays.fill(newPhoneKeys, 0, newCount, -1);
+			resetInserted();
+			try {
+				warehouseConn.rollback();
+			} catch (SQLException rollbackError) {
+				e.addSuppressed(rollbackError);
+			}
+			throw e;
+		} finally {
+			if (streaming) {
+				closeStream();
+			} else {
+				warehouseConn.setAutoCommit(autoCommit);
+			}
+		}
+		return newCount;
+	}
+
+	private void insertNewRows(Connection warehouseConn) throws SQLException {
+		try (PreparedStatement insertStmt = warehouseConn.prepareStatement(INSERT_SQL);
+			 PreparedStatement insertUpdatedStmt = warehouseConn.prepareStatement(INSERT_UPDATED_SQL)) {
+			int pending = 0;
+			int pendingUpdated = 0;
+			for (int slot = 0; slot < index.capacity(); slot++) {
+				byte state = index.state(slot);
+				if (state == FactPhoneIndex.NEW) {
+					bindInsert(insertStmt, slot);
+					if (++pending == batchSize) {
+						insertStmt.executeBatch();
+						pending = 0;
+					}
+				} else if (state == FactPhoneIndex.NEW_UPDATED) {
+					bindInsert(insertUpdatedStmt, slot);
+					if (++pendingUpdated == batchSize) {
+						insertUpdatedStmt.executeBatch();
+						pendingUpdated = 0;
+					}
+				}
+			}
+			if (pending > 0) {
+				insertStmt.executeBatch();
+			}
+			if (pendingUpdated > 0) {
+				insertUpdatedStmt.executeBatch();
+			}
+		}
+	}
+
+	private void bindInsert(PreparedStatement insertStmt, int slot) throws SQLException {
+		for (int i = 0; i < 5; i++) {
+			insertStmt.setInt(i + 1, index.key(slot, i));
+		}
+		insertStmt.setDouble(6, index.price(slot));
+		insertStmt.addBatch();
+	}
+
+	// Lấy PhoneKey của các dòng vừa thêm theo khóa chiều, không phụ thuộc thứ tự sinh khóa
+	private void readNewPhoneKeys(Connection warehouseConn) throws SQLException {
+		String sql = SELECT_NEW_KEYS_SQL + (partitionFilter != null ? " AND " + partitionFilter : "") + " ORDER BY PhoneKey";
+		try (PreparedStatement pstmt = warehouseConn.prepareStatement(sql)) {
+			pstmt.setInt(1, maxPhoneKey);
+			try (ResultSet rs = pstmt.executeQuery()) {
+				while (rs.next()) {
+					int slot = index.find(rs.getInt(2), rs.getInt(3), rs.getInt(4), rs.getInt(5), rs.getInt(6));
+					// Index giữ số thứ tự của dòng mới để lần thử lại sau rollback vẫn dùng được
+					if (slot >= 0 && index.phoneKey(slot) < 0 && newPhoneKeys[-index.phoneKey(slot) - 1] == -1) {
+						newPhoneKeys[-index.phoneKey(slot) - 1] = rs.getInt(1);
+					}
+				}
+			}
+		}
+	}
+
+	private void updatePrices(Connection warehouseConn) throws SQLException {
+		try (PreparedStatement updateStmt = warehouseConn.prepareStatement(UPDATE_SQL)) {
+			int pending = 0;
+			for (int slot = 0; slot < index.capacity(); slot++) {
+				byte state = index.state(slot);
+				if (state != FactPhoneIndex.UPDATED && state != FactPhoneIndex.INSERTED_UPDATED) {
+					continue;
+				}
+				// Dòng đã INSERT sớm giữ số thứ tự dòng mới thay cho PhoneKey
+				int phoneKey = index.phoneKey(slot);
+				updateStmt.setDouble(1, index.price(slot));
+				updateStmt.setInt(2, phoneKey < 0 ? newPhoneKeys[-phoneKey - 1] : phoneKey);
+				updateStmt.addBatch();
+				if (++pending == batchSize) {
+					updateStmt.executeBatch();
+					pending = 0;
+				}
+			}
+			if (pending > 0) {
+				updateStmt.executeBatch();
+			}
+		}
+	}
+
+	private void writeLogs(Connection warehouseConn) throws SQLException {
+		try (PreparedStatement logStmt = warehouseConn.prepareStatement(LOG_SQL)) {
+			int pending = 0;
+			for (int i = 0; i < logCount; i++) {
+				int phoneKey = logPhoneKeys[i] < 0 ? newPhoneKeys[-logPhoneKeys[i] - 1] : logPhoneKeys[i];
+				logStmt.setInt(1, phoneKey);
+				logStmt.setDouble(2, logOldPrices[i]);
+				logStmt.setDouble(3, logNewPrices[i]);
+				logStmt.addBatch();
+				if (++pending == batchSize) {
+					logStmt.executeBatch();
+					pending = 0;
+				}
+			}
+			if (pending > 0) {
+				logStmt.executeBatch();
+			}
+		}
+	}
+}
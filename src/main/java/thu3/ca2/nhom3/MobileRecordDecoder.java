@@ -0,0 +1,207 @@
+package thu3.ca2.nhom3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Giải mã các cột số của một bản ghi CSV thành kiểu nguyên thủy mà không ném exception.
+// Cột không hợp lệ được báo qua mã trạng thái (bitmask), nên dòng bẩn tốn chi phí như dòng sạch.
+public class MobileRecordDecoder {
+	public static final int OK = 0;
+	public static final int MISSING_COLUMNS = 1;
+	public static final int INVALID_PRICE = 1 << 1;
+	public static final int INVALID_BATTERY_CAPACITY = 1 << 2;
+	public static final int INVALID_SCREEN_SIZE = 1 << 3;
+	public static final int INVALID_RESOLUTION_X = 1 << 4;
+	public static final int INVALID_RESOLUTION_Y = 1 << 5;
+	public static final int INVALID_RAM = 1 << 6;
+	public static final int INVALID_INTERNAL_STORAGE = 1 << 7;
+
+	// Dòng có lỗi này thì bị bỏ hoàn toàn; các lỗi khác chỉ ngăn việc thêm mới
+	public static final int REJECTED = MISSING_COLUMNS | INVALID_PRICE;
+
+	private static final int COLUMN_COUNT = 15;
+	private static final long INVALID_INT = Long.MIN_VALUE;
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	public int batteryCapacity;
+	public double screenSize;
+	public boolean touchscreen;
+	public int resolutionX;
+	public int resolutionY;
+	public int ram;
+	public int internalStorage;
+	public double price;
+
+	// Đọc lại các trường của bản ghi, trả về OK hoặc tổ hợp các cờ INVALID_*
+	public int decode(String[] record) {
+		if (record.length < COLUMN_COUNT) {
+			return MISSING_COLUMNS;
+		}
+
+		int status = OK;
+		price = parseDouble(record[14]);
+		if (Double.isNaN(price) && !isNaNLiteral(record[14])) {
+			status |= INVALID_PRICE;
+		}
+		screenSize = parseDouble(record[4]);
+		if (Double.isNaN(screenSize) && !isNaNLiteral(record[4])) {
+			status |= INVALID_SCREEN_SIZE;
+		}
+		touchscreen = Boolean.parseBoolean(record[5]);
+
+		long value = parseInt(record[3]);
+		status |= value == INVALID_INT ? INVALID_BATTERY_CAPACITY : 0;
+		batteryCapacity = (int) value;
+		value = parseInt(record[6]);
+		status |= value == INVALID_INT ? INVALID_RESOLUTION_X : 0;
+		resolutionX = (int) value;
+		value = parseInt(record[7]);
+		status |= value == INVALID_INT ? INVALID_RESOLUTION_Y : 0;
+		resolutionY = (int) value;
+		value = parseInt(record[9]);
+		status |= value == INVALID_INT ? INVALID_RAM : 0;
+		ram = (int) value;
+		value = parseInt(record[10]);
+		status |= value == INVALID_INT ? INVALID_INTERNAL_STORAGE : 0;
+		internalStorage = (int) value;
+		return status;
+	}
+
+	public static String describe(int status) {
+		if ((status & MISSING_COLUMNS) != 0) {
+			return "missing columns";
+		}
+		List<String> fields = new ArrayList<>();
+		if ((status & INVALID_PRICE) != 0) fields.add("price");
+		if ((status & INVALID_BATTERY_CAPACITY) != 0) fields.add("battery_capacity");
+		if ((status & INVALID_SCREEN_SIZE) != 0) fields.add("screen_size");
+		if ((status & INVALID_RESOLUTION_X) != 0) fields.add("resolution_x");
+		if ((status & INVALID_RESOLUTION_Y) != 0) fields.add("resolution_y");
+		if ((status & INVALID_RAM) != 0) fields.add("ram");
+		if ((status & INVALID_INTERNAL_STORAGE) != 0) fields.add("internal_storage");
+		return "invalid " + String.join(", ", fields);
+	}
+
+	// Cùng cú pháp với Integer.parseInt (dấu +/- tùy chọn, chữ số ASCII); INVALID_INT nếu sai
+	static long parseInt(CharSequence s) {
+		return parseInt(s, 0, s == null ? 0 : s.length());
+	}
+
+	static long parseInt(CharSequence s, int start, int end) {
+		if (s == null || start >= end) {
+			return INVALID_INT;
+		}
+		int i = start;
+		boolean negative = false;
+		char first = s.charAt(i);
+		if (first == '-' || first == '+') {
+			negative = first == '-';
+			if (++i == end) {
+				return INVALID_INT;
+			}
+		}
+
+		long value = 0;
+		for (; i < end; i++) {
+			int digit = s.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				return INVALID_INT;
+			}
+			value = value * 10 + digit;
+			if (value > Integer.MAX_VALUE + 1L) {
+				return INVALID_INT;
+			}
+		}
+		value = negative ? -value : value;
+		return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? INVALID_INT : value;
+	}
+
+	// Số thập phân thông thường được tính trực tiếp (chính xác như Double.parseDouble khi mantissa
+	// không quá 15 chữ số và số mũ trong khoảng ±22). Trả về NaN nếu chuỗi không hợp lệ.
+	static double parseDouble(CharSequence s) {
+		if (s == null) {
+			return Double.NaN;
+		}
+		int start = 0;
+		int end = s.length();
+		// Double.parseDouble bỏ khoảng trắng hai đầu và chấp nhận hậu tố d/f
+		while (start < end && s.charAt(start) <= ' ') start++;
+		while (end > start && s.charAt(end - 1) <= ' ') end--;
+		if (end > start && "dDfF".indexOf(s.charAt(end - 1)) >= 0) end--;
+		if (start >= end) {
+			return Double.NaN;
+		}
+
+		int i = start;
+		boolean negative = false;
+		if (s.charAt(i) == '-' || s.charAt(i) == '+') {
+			negative = s.charAt(i) == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int significantDigits = 0;
+		int exponent = 0;
+		boolean anyDigits = false;
+		boolean seenPoint = false;
+		for (; i < end; i++) {
+			char c = s.charAt(i);
+			if (c >= '0' && c <= '9') {
+				anyDigits = true;
+				if (mantissa == 0 && c == '0') {
+					if (seenPoint) exponent--;
+					continue;
+				}
+				if (significantDigits < 18) {
+					mantissa = mantissa * 10 + (c - '0');
+					if (seenPoint) exponent--;
+				} else if (!seenPoint) {
+					exponent++;
+				}
+				significantDigits++;
+			} else if (c == '.' && !seenPoint) {
+				seenPoint = true;
+			} else {
+				break;
+			}
+		}
+		if (!anyDigits) {
+			return parseSpecial(s, start, end);
+		}
+
+		if (i < end) {
+			char c = s.charAt(i);
+			if (c != 'e' && c != 'E') {
+				return Double.NaN;
+			}
+			long exp = parseInt(s, i + 1, end);
+			if (exp == INVALID_INT) {
+				return Double.NaN;
+			}
+			exponent += (int) exp;
+		}
+
+		if (significantDigits <= 15 && exponent >= -22 && exponent <= 22) {
+			double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+			return negative ? -value : value;
+		}
+		// Cú pháp đã hợp lệ, phần còn lại để JDK làm tròn chính xác
+		return Double.parseDouble(s.subSequence(start, end).toString());
+	}
+
+	private static double parseSpecial(CharSequence s, int start, int end) {
+		String value = s.subSequence(start, end).toString();
+		return switch (value) {
+			case "Infinity", "+Infinity" -> Double.POSITIVE_INFINITY;
+			case "-Infinity" -> Double.NEGATIVE_INFINITY;
+			default -> Double.NaN;
+		};
+	}
+
+	private static boolean isNaNLiteral(String value) {
+		String trimmed = value.trim();
+		return trimmed.equals("NaN") || trimmed.equals("+NaN") || trimmed.equals("-NaN");
+	}
+}
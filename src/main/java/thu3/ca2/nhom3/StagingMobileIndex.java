@@ -0,0 +1,143 @@
+package thu3.ca2.nhom3;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Chỉ mục (name, brand, model) -> (id, price) của staging_mobile giữ trong bộ nhớ,
+// thay cho câu SELECT theo từng dòng khi load CSV.
+public class StagingMobileIndex {
+	private static final int PENDING_ID = -1;
+	// Ước lượng cho mỗi khóa: HashMap node + bảng băm + String + Integer
+	private static final long BYTES_PER_ENTRY = 112;
+
+	private final Map<String, Integer> slots;
+	private int[] ids;
+	private double[] prices;
+	private int size;
+
+	private StagingMobileIndex(int expectedSize) {
+		int capacity = Math.max(16, expectedSize + expectedSize / 4);
+		this.slots = new HashMap<>(capacity * 4 / 3 + 1);
+		this.ids = new int[capacity];
+		this.prices = new double[capacity];
+	}
+
+	// Trả về null nếu bảng vượt quá memoryBudgetBytes, khi đó dùng SELECT theo từng dòng
+	public static StagingMobileIndex load(Connection conn, long memoryBudgetBytes) throws SQLException {
+		long rowCount;
+		long keyChars;
+		try (Statement stmt = conn.createStatement();
+			 ResultSet rs = stmt.executeQuery("SELECT COUNT(*), SUM(CAST(LEN(name) + LEN(brand) + LEN(model) + 2 AS BIGINT)) FROM staging_mobile")) {
+			rs.next();
+			rowCount = rs.getLong(1);
+			keyChars = rs.getLong(2);
+		}
+
+		long estimatedBytes = rowCount * BYTES_PER_ENTRY + keyChars;
+		if (estimatedBytes > memoryBudgetBytes) {
+			System.out.println("staging_mobile index needs ~" + estimatedBytes / (1024 * 1024)
+					+ " MB, over the budget of " + memoryBudgetBytes / (1024 * 1024) + " MB. Using per-row lookups.");
+			return null;
+		}
+
+		StagingMobileIndex index = new StagingMobileIndex((int) rowCount);
+		try (Statement stmt = conn.createStatement();
+			 ResultSet rs = stmt.executeQuery("SELECT id, name, brand, model, price FROM staging_mobile")) {
+			while (rs.next()) {
+				String name = rs.getString(2);
+				String brand = rs.getString(3);
+				String model = rs.getString(4);
+				// Giá trị NULL không bao giờ khớp với "= ?" nên không cần đưa vào chỉ mục
+				if (name != null && brand != null && model != null) {
+					index.put(key(name, brand, model), rs.getInt(1), rs.getDouble(5));
+				}
+			}
+		}
+		System.out.println("Loaded staging_mobile index: " + index.size() + " keys, ~"
+				+ index.estimatedBytes() / (1024 * 1024) + " MB");
+		return index;
+	}
+
+	// So khớp giống collation mặc định của SQL Server: không phân biệt hoa thường, bỏ khoảng trắng cuối
+	private static String key(String name, String brand, String model) {
+		return normalize(name) + '\u0000' + normalize(brand) + '\u0000' + normalize(model);
+	}
+
+	private static String normalize(String value) {
+		return value.stripTrailing().toLowerCase(Locale.ROOT);
+	}
+
+	private void put(String key, int id, double price) {
+		Integer slot = slots.get(key);
+		if (slot == null) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+				prices = Arrays.copyOf(prices, size * 2);
+			}
+			slot = size++;
+			slots.put(key, slot);
+		}
+		ids[slot] = id;
+		prices[slot] = price;
+	}
+
+	public int slotOf(String name, String brand, String model) {
+		Integer slot = slots.get(key(name, brand, model));
+		return slot == null ? -1 : slot;
+	}
+
+	public boolean isPending(int slot) {
+		return ids[slot] == PENDING_ID;
+	}
+
+	public int id(int slot) {
+		return ids[slot];
+	}
+
+	public double price(int slot) {
+		return prices[slot];
+	}
+
+	public void updatePrice(int slot, double price) {
+		prices[slot] = price;
+	}
+
+	// Dòng mới đã vào batch INSERT nhưng chưa có id
+	public void addPending(String name, String brand, String model, double price) {
+		put(key(name, brand, model), PENDING_ID, price);
+	}
+
+	// Gọi sau khi batch INSERT đã được thực thi; trả về false nếu dòng không có trong bảng
+	public boolean resolve(int slot, PreparedStatement selectStmt, String name, String brand, String model) throws SQLException {
+		selectStmt.setString(1, name);
+		selectStmt.setString(2, brand);
+		selectStmt.setString(3, model);
+		try (ResultSet rs = selectStmt.executeQuery()) {
+			if (rs.next()) {
+				ids[slot] = rs.getInt("id");
+				prices[slot] = rs.getDouble("price");
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long estimatedBytes() {
+		long keyBytes = 0;
+		for (String key : slots.keySet()) {
+			keyBytes += key.length();
+		}
+		return size * BYTES_PER_ENTRY + keyBytes + (long) ids.length * (Integer.BYTES + Double.BYTES);
+	}
+}
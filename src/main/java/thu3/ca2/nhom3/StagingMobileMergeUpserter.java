@@ -0,0 +1,175 @@
+package thu3.ca2.nhom3;
+
+import com.dw.BulkIngestEngine;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+// Upsert theo lô: mỗi lô được bulk copy vào bảng tạm, sau đó vài câu lệnh theo tập hợp
+// cho cùng kết quả như xử lý từng dòng theo thứ tự file: khóa mới được thêm từ dòng hợp lệ đầu tiên,
+// mọi lần đổi giá (kể cả các giá trung gian trong cùng lô) đều được ghi vào price_update_log.
+public class StagingMobileMergeUpserter implements AutoCloseable {
+	// %1$s: bảng tạm chứa lô, %2$s: bảng tạm chứa các lần đổi giá
+	private static final String CREATE_TABLES_SQL = """
+			CREATE %3$s %1$s (
+			    seq INT NOT NULL,
+			    name NVARCHAR(4000) %4$s,
+			    brand NVARCHAR(4000) %4$s,
+			    model NVARCHAR(4000) %4$s,
+			    battery_capacity INT, screen_size FLOAT, touchscreen BIT, resolution_x INT, resolution_y INT,
+			    processor NVARCHAR(4000) %4$s,
+			    ram INT, internal_storage INT,
+			    rear_camera NVARCHAR(4000) %4$s,
+			    front_camera NVARCHAR(4000) %4$s,
+			    operating_system NVARCHAR(4000) %4$s,
+			    price FLOAT NOT NULL,
+			    insertable BIT NOT NULL
+			);
+			CREATE %3$s %2$s (mobile_id INT NOT NULL, seq INT NOT NULL, old_price FLOAT, new_price FLOAT NOT NULL);
+			""";
+
+	// Khóa chưa có trong staging_mobile: các dòng đứng trước dòng hợp lệ đầu tiên không có tác dụng (như xử lý từng dòng)
+	private static final String DROP_UNMATCHED_SQL = """
+			DELETE FROM %1$s
+			WHERE NOT EXISTS (SELECT 1 FROM staging_mobile t
+			                  WHERE t.name = %1$s.name AND t.brand = %1$s.brand AND t.model = %1$s.model)
+			  AND NOT EXISTS (SELECT 1 FROM %1$s f
+			                  WHERE f.name = %1$s.name AND f.brand = %1$s.brand AND f.model = %1$s.model
+			                    AND f.insertable = 1 AND f.seq <= %1$s.seq)
+			""";
+
+	// Sau bước trên, dòng đầu tiên của mỗi khóa mới là dòng hợp lệ đầu tiên; thêm theo thứ tự file
+	private static final String INSERT_SQL = """
+			INSERT INTO staging_mobile (name, brand, model, battery_capacity, screen_size, touchscreen, resolution_x, resolution_y,
+			                            processor, ram, internal_storage, rear_camera, front_camera, operating_system, price, loaded_date)
+			SELECT c.name, c.brand, c.model, c.battery_capacity, c.screen_size, c.touchscreen, c.resolution_x, c.resolution_y,
+			       c.processor, c.ram, c.internal_storage, c.rear_camera, c.front_camera, c.operating_system, c.price, GETDATE()
+			FROM %1$s c
+			WHERE NOT EXISTS (SELECT 1 FROM staging_mobile t WHERE t.name = c.name AND t.brand = c.brand AND t.model = c.model)
+			  AND NOT EXISTS (SELECT 1 FROM %1$s f
+			                  WHERE f.name = c.name AND f.brand = c.brand AND f.model = c.model AND f.seq < c.seq)
+			ORDER BY c.seq
+			""";
+
+	// Mỗi dòng so với dòng trước của cùng khóa, dòng đầu tiên so với giá hiện tại (NULL coi như 0).
+	// Với khóa vừa thêm, dòng đầu tiên chính là dòng đã thêm nên không sinh thay đổi.
+	private static final String COLLECT_CHANGES_SQL = """
+			INSERT INTO %2$s (mobile_id, seq, old_price, new_price)
+			SELECT mobile_id, seq, old_price, new_price FROM (
+			    SELECT t.id AS mobile_id, c.seq, c.price AS new_price,
+			           COALESCE(LAG(c.price) OVER (PARTITION BY t.id ORDER BY c.seq), ISNULL(t.price, 0)) AS old_price
+			    FROM %1$s c
+			    JOIN staging_mobile t ON t.name = c.name AND t.brand = c.brand AND t.model = c.model
+			) x
+			WHERE old_price <> new_price
+			""";
+
+	private static final String LOG_CHANGES_SQL = """
+			INSERT INTO price_update_log (mobile_id, old_price, new_price, updated_at)
+			SELECT mobile_id, old_price, new_price, GETDATE() FROM %2$s ORDER BY seq
+			""";
+
+	// Giá cuối cùng của mỗi dòng là giá của lần đổi sau cùng
+	private static final String APPLY_CHANGES_SQL = """
+			UPDATE staging_mobile
+			SET price = (SELECT c.new_price FROM %2$s c
+			             WHERE c.mobile_id = staging_mobile.id
+			               AND c.seq = (SELECT MAX(l.seq) FROM %2$s l WHERE l.mobile_id = staging_mobile.id)),
+			    last_updated = GETDATE()
+			WHERE id IN (SELECT mobile_id FROM %2$s)
+			""";
+
+	private static final String CLEAR_TABLES_SQL = "TRUNCATE TABLE %1$s; TRUNCATE TABLE %2$s";
+
+	private static final List<BulkIngestEngine.Column> CHUNK_COLUMNS = List.of(
+			new BulkIngestEngine.Column("seq", Types.INTEGER, 10, 0),
+			BulkIngestEngine.Column.nvarchar("name"),
+			BulkIngestEngine.Column.nvarchar("brand"),
+			BulkIngestEngine.Column.nvarchar("model"),
+			new BulkIngestEngine.Column("battery_capacity", Types.INTEGER, 10, 0),
+			new BulkIngestEngine.Column("screen_size", Types.DOUBLE, 15, 0),
+			BulkIngestEngine.Column.bit("touchscreen"),
+			new BulkIngestEngine.Column("resolution_x", Types.INTEGER, 10, 0),
+			new BulkIngestEngine.Column("resolution_y", Types.INTEGER, 10, 0),
+			BulkIngestEngine.Column.nvarchar("processor"),
+			new BulkIngestEngine.Column("ram", Types.INTEGER, 10, 0),
+			new BulkIngestEngine.Column("internal_storage", Types.INTEGER, 10, 0),
+			BulkIngestEngine.Column.nvarchar("rear_camera"),
+			BulkIngestEngine.Column.nvarchar("front_camera"),
+			BulkIngestEngine.Column.nvarchar("operating_system"),
+			new BulkIngestEngine.Column("price", Types.DOUBLE, 15, 0),
+			BulkIngestEngine.Column.bit("insertable"));
+
+	private final Connection conn;
+	private final int chunkSize;
+	private final String chunkTable;
+	private final String changesTable;
+	private final BulkIngestEngine chunkLoader;
+	private final List<Object[]> chunk = new ArrayList<>();
+	private int seq;
+
+	public StagingMobileMergeUpserter(Connection conn, int chunkSize) throws SQLException {
+		this.conn = conn;
+		this.chunkSize = chunkSize;
+		// Bảng tạm "#..." của SQL Server; các database khác (H2 khi test) dùng LOCAL TEMPORARY TABLE
+		boolean sqlServer = BulkIngestEngine.isSqlServer(conn);
+		this.chunkTable = sqlServer ? "#staging_mobile_chunk" : "staging_mobile_chunk";
+		this.changesTable = sqlServer ? "#staging_mobile_price_changes" : "staging_mobile_price_changes";
+		this.chunkLoader = new BulkIngestEngine(conn, chunkTable, CHUNK_COLUMNS, chunkSize, true);
+		execute(CREATE_TABLES_SQL.formatted(chunkTable, changesTable,
+				sqlServer ? "TABLE" : "LOCAL TEMPORARY TABLE", sqlServer ? "COLLATE DATABASE_DEFAULT" : ""));
+	}
+
+	// Bản ghi đã được giải mã; insertable = false khi có cột số không hợp lệ, lúc đó dòng
+	// chỉ được dùng để cập nhật giá chứ không được thêm mới (giống cách xử lý từng dòng).
+	// Trả về số dòng đã được thêm mới khi lô đầy, ngược lại 0.
+	public int add(String[] record, MobileRecordDecoder decoded, boolean insertable) throws SQLException {
+		chunk.add(new Object[]{
+				seq++, record[0], record[1], record[2],
+				decoded.batteryCapacity, decoded.screenSize, decoded.touchscreen,
+				decoded.resolutionX, decoded.resolutionY, record[8],
+				decoded.ram, decoded.internalStorage, record[11], record[12], record[13],
+				decoded.price, insertable});
+
+		return chunk.size() >= chunkSize ? flush() : 0;
+	}
+
+	public int flush() throws SQLException {
+		if (chunk.isEmpty()) {
+			return 0;
+		}
+		chunkLoader.load(chunk.iterator());
+		chunk.clear();
+
+		try (Statement stmt = conn.createStatement()) {
+			stmt.executeUpdate(DROP_UNMATCHED_SQL.formatted(chunkTable));
+			int inserted = stmt.executeUpdate(INSERT_SQL.formatted(chunkTable));
+			stmt.executeUpdate(COLLECT_CHANGES_SQL.formatted(chunkTable, changesTable));
+			stmt.executeUpdate(LOG_CHANGES_SQL.formatted(chunkTable, changesTable));
+			stmt.executeUpdate(APPLY_CHANGES_SQL.formatted(chunkTable, changesTable));
+			execute(CLEAR_TABLES_SQL.formatted(chunkTable, changesTable));
+			return inserted;
+		}
+	}
+
+	// Kết nối có thể được trả về pool, nên dọn bảng tạm
+	@Override
+	public void close() throws SQLException {
+		execute("DROP TABLE IF EXISTS %1$s; DROP TABLE IF EXISTS %2$s".formatted(chunkTable, changesTable));
+	}
+
+	// Chạy lần lượt từng câu lệnh trong một đoạn SQL phân cách bằng dấu chấm phẩy
+	private void execute(String sql) throws SQLException {
+		try (Statement stmt = conn.createStatement()) {
+			for (String statement : sql.split(";")) {
+				if (!statement.isBlank()) {
+					stmt.execute(statement);
+				}
+			}
+		}
+	}
+}
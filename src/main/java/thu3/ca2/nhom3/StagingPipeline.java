@@ -0,0 +1,240 @@
+package thu3.ca2.nhom3;
+
+import com.microsoft.sqlserver.jdbc.SQLServerStatement;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Đọc staging và ghi warehouse chồng lên nhau: luồng gọi run() đọc ResultSet thành từng chunk và đẩy vào một
+// hàng đợi có giới hạn, các luồng writer lấy chunk ra xử lý. Hàng đợi đầy thì luồng đọc phải chờ (backpressure),
+// nên bộ nhớ tối đa khoảng (queueCapacity + writers) * chunkSize dòng.
+// Mỗi chunk qua ba bước trên writer: prepare (song song), apply (lần lượt đúng thứ tự đọc, nên kết quả giống
+// như đọc tuần tự) và afterApply (song song, cho phần I/O không cần thứ tự).
+class StagingPipeline {
+	private static final Chunk END = new Chunk(-1, List.of());
+
+	private record Chunk(long sequence, List<Object[]> rows) {
+	}
+
+	// Đọc một dòng của ResultSet thành mảng giá trị; chạy trên luồng đọc
+	@FunctionalInterface
+	interface RowReader {
+		Object[] read(ResultSet rs) throws SQLException;
+	}
+
+	// Xử lý các chunk trên một luồng writer; close() được gọi khi luồng đó kết thúc
+	interface ChunkWriter<T> extends AutoCloseable {
+		T prepare(List<Object[]> rows) throws SQLException;
+
+		void apply(T prepared) throws SQLException;
+
+		default void afterApply() throws SQLException {
+		}
+
+		@Override
+		default void close() throws SQLException {
+		}
+	}
+
+	// Mỗi luồng writer mở ChunkWriter riêng (ví dụ với kết nối riêng)
+	@FunctionalInterface
+	interface WriterFactory<T> {
+		ChunkWriter<T> open() throws SQLException;
+	}
+
+	// readerStall: thời gian luồng đọc chờ vì hàng đợi đầy (writer chậm hơn).
+	// writerStall: tổng thời gian các writer chờ vì hàng đợi rỗng (đọc staging chậm hơn).
+	// orderStall: tổng thời gian các writer chờ tới lượt apply chunk của mình.
+	record Metrics(long rows, long chunks, int maxQueueDepth, double avgQueueDepth,
+				   long readerStallNanos, long writerStallNanos, long orderStallNanos, long elapsedNanos) {
+		@Override
+		public String toString() {
+			return String.format("%d rows in %d chunks, %d ms; queue depth avg %.1f max %d; reader stall %d ms, writer stall %d ms, order stall %d ms",
+					rows, chunks, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), avgQueueDepth, maxQueueDepth,
+					TimeUnit.NANOSECONDS.toMillis(readerStallNanos), TimeUnit.NANOSECONDS.toMillis(writerStallNanos),
+					TimeUnit.NANOSECONDS.toMillis(orderStallNanos));
+		}
+	}
+
+	// Trạng thái chung của một lần run()
+	private static final class Run {
+		final BlockingQueue<Chunk> queue;
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final AtomicLong writerStall = new AtomicLong();
+		final AtomicLong orderStall = new AtomicLong();
+		final Object turnLock = new Object();
+		long nextToApply; // guarded by turnLock
+
+		Run(int queueCapacity) {
+			queue = new ArrayBlockingQueue<>(queueCapacity);
+		}
+
+		void fail(Throwable e) {
+			failure.compareAndSet(null, e);
+			synchronized (turnLock) {
+				turnLock.notifyAll();
+			}
+		}
+	}
+
+	private final int queueCapacity;
+	private final int chunkSize;
+	private final int fetchSize;
+	private final int writers;
+
+	StagingPipeline(int queueCapacity, int chunkSize, int fetchSize, int writers) {
+		this.queueCapacity = Math.max(1, queueCapacity);
+		this.chunkSize = Math.max(1, chunkSize);
+		this.fetchSize = fetchSize;
+		this.writers = Math.max(1, writers);
+	}
+
+	// Chạy câu SELECT đã bind tham số và chờ mọi writer xử lý xong. Lỗi đầu tiên (đọc hoặc ghi) dừng cả pipeline.
+	<T> Metrics run(PreparedStatement stagingStmt, RowReader reader, WriterFactory<T> writerFactory) throws SQLException {
+		Run run = new Run(queueCapacity);
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(writers, r -> {
+			Thread thread = new Thread(r, "staging-writer-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		for (int i = 0; i < writers; i++) {
+			executor.execute(() -> drain(run, writerFactory));
+		}
+
+		long start = System.nanoTime();
+		long rows = 0;
+		long chunks = 0;
+		long depthSum = 0;
+		int maxDepth = 0;
+		long readerStall = 0;
+		try {
+			if (fetchSize > 0) {
+				stagingStmt.setFetchSize(fetchSize);
+			}
+			// Driver SQL Server: đọc dần từ mạng thay vì giữ cả kết quả trong bộ nhớ
+			if (stagingStmt.isWrapperFor(SQLServerStatement.class)) {
+				stagingStmt.unwrap(SQLServerStatement.class).setResponseBuffering("adaptive");
+			}
+			try (ResultSet rs = stagingStmt.executeQuery()) {
+				List<Object[]> rowsOfChunk = new ArrayList<>(chunkSize);
+				while (run.failure.get() == null && rs.next()) {
+					rowsOfChunk.add(reader.read(rs));
+					rows++;
+					if (rowsOfChunk.size() == chunkSize) {
+						int depth = run.queue.size();
+						depthSum += depth;
+						maxDepth = Math.max(maxDepth, depth);
+						long waitStart = System.nanoTime();
+						if (!offer(run, new Chunk(chunks, rowsOfChunk))) {
+							break;
+						}
+						readerStall += System.nanoTime() - waitStart;
+						chunks++;
+						rowsOfChunk = new ArrayList<>(chunkSize);
+					}
+				}
+				if (!rowsOfChunk.isEmpty() && run.failure.get() == null && offer(run, new Chunk(chunks, rowsOfChunk))) {
+					chunks++;
+				}
+			}
+			for (int i = 0; i < writers && run.failure.get() == null; i++) {
+				offer(run, END);
+			}
+		} catch (SQLException | RuntimeException e) {
+			run.fail(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			run.fail(e);
+		} finally {
+			if (run.failure.get() != null) {
+				executor.shutdownNow(); // đánh thức các writer đang chờ hàng đợi
+			} else {
+				executor.shutdown();
+			}
+			try {
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		Throwable error = run.failure.get();
+		if (error instanceof SQLException e) {
+			throw e;
+		}
+		if (error != null) {
+			throw new SQLException("Staging pipeline failed", error);
+		}
+		return new Metrics(rows, chunks, maxDepth, chunks == 0 ? 0 : (double) depthSum / chunks,
+				readerStall, run.writerStall.get(), run.orderStall.get(), System.nanoTime() - start);
+	}
+
+	// Chờ chỗ trống trong hàng đợi; trả về false nếu pipeline đã lỗi trong lúc chờ
+	private static boolean offer(Run run, Chunk chunk) throws InterruptedException {
+		while (!run.queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+			if (run.failure.get() != null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Các writer lấy chunk theo đúng thứ tự của hàng đợi, nên mọi chunk nhỏ hơn chunk đang chờ lượt đều đã
+	// nằm trong tay một writer khác và sẽ được apply; việc chờ lượt không thể bị kẹt.
+	private static <T> void drain(Run run, WriterFactory<T> writerFactory) {
+		try (ChunkWriter<T> writer = writerFactory.open()) {
+			while (true) {
+				long waitStart = System.nanoTime();
+				Chunk chunk = run.queue.take();
+				run.writerStall.addAndGet(System.nanoTime() - waitStart);
+				if (chunk == END || run.failure.get() != null) {
+					return;
+				}
+				T prepared = writer.prepare(chunk.rows());
+				if (!awaitTurn(run, chunk.sequence())) {
+					return;
+				}
+				try {
+					writer.apply(prepared);
+				} finally {
+					synchronized (run.turnLock) {
+						run.nextToApply++;
+						run.turnLock.notifyAll();
+					}
+				}
+				writer.afterApply();
+			}
+		} catch (InterruptedException e) {
+			// Pipeline đã lỗi ở nơi khác và đang dừng
+		} catch (Exception e) {
+			run.fail(e);
+		}
+	}
+
+	// Trả về false nếu pipeline đã lỗi trong lúc chờ
+	private static boolean awaitTurn(Run run, long sequence) throws InterruptedException {
+		long waitStart = System.nanoTime();
+		synchronized (run.turnLock) {
+			while (run.nextToApply != sequence) {
+				if (run.failure.get() != null) {
+					return false;
+				}
+				run.turnLock.wait();
+			}
+		}
+		run.orderStall.addAndGet(System.nanoTime() - waitStart);
+		return true;
+	}
+}
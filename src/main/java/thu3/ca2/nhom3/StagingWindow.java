@@ -0,0 +1,33 @@
+package thu3.ca2.nhom3;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+// Khoảng thay đổi của staging_mobile mà một lần transform xử lý: các dòng được thêm (loaded_date) hoặc
+// cập nhật giá (last_updated) trong [from, to]. from = null nghĩa là xử lý toàn bộ bảng.
+// Cận dưới lấy cả from: dòng commit sau khi lần trước đọc MAX nhưng có cùng GETDATE() với mốc đó (DATETIME
+// chỉ chính xác ~3 ms) vẫn được đọc lại. Đọc lại dòng đã nạp là vô hại vì nạp chiều và fact đều idempotent.
+record StagingWindow(Timestamp from, Timestamp to) {
+	static final StagingWindow ALL = new StagingWindow(null, null);
+
+	boolean isIncremental() {
+		return from != null;
+	}
+
+	// Điều kiện WHERE nối vào sau câu SELECT trên staging_mobile (câu đó không được có WHERE)
+	String where() {
+		return isIncremental()
+				? " WHERE ((loaded_date >= ? AND loaded_date <= ?) OR (last_updated >= ? AND last_updated <= ?))"
+				: "";
+	}
+
+	void bind(PreparedStatement pstmt) throws SQLException {
+		if (isIncremental()) {
+			pstmt.setTimestamp(1, from);
+			pstmt.setTimestamp(2, to);
+			pstmt.setTimestamp(3, from);
+			pstmt.setTimestamp(4, to);
+		}
+	}
+}
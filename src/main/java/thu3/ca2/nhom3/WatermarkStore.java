@@ -0,0 +1,99 @@
+package thu3.ca2.nhom3;
+
+import com.dw.ConnectionPool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+// Mốc high-water của transform tăng dần theo từng bảng đích, lưu trong bảng etl_watermark của control DB.
+// Mốc chỉ được đẩy lên sau khi dữ liệu của bảng đích đã commit bên warehouse; nếu chạy lỗi giữa chừng thì
+// lần sau xử lý lại từ mốc cũ, việc này an toàn vì nạp chiều và nạp fact đều idempotent.
+class WatermarkStore {
+	private static final String CREATE_TABLE_SQL = """
+            CREATE TABLE etl_watermark (
+                target_name NVARCHAR(100) NOT NULL PRIMARY KEY,
+                high_water_mark DATETIME NOT NULL,
+                updated_at DATETIME NOT NULL
+            )
+        """;
+
+	private final String controlDbUrl;
+	private boolean tableChecked;
+
+	WatermarkStore(String controlDbUrl) {
+		this.controlDbUrl = controlDbUrl;
+	}
+
+	// null nếu bảng đích chưa từng được transform
+	synchronized Timestamp get(String target) throws SQLException {
+		try (Connection conn = ConnectionPool.getConnection(controlDbUrl)) {
+			ensureTable(conn);
+			try (PreparedStatement pstmt = conn.prepareStatement(
+					"SELECT high_water_mark FROM etl_watermark WHERE target_name = ?")) {
+				pstmt.setString(1, target);
+				try (ResultSet rs = pstmt.executeQuery()) {
+					return rs.next() ? rs.getTimestamp(1) : null;
+				}
+			}
+		}
+	}
+
+	// Chỉ đẩy mốc lên khi mốc hiện tại vẫn là previous, để hai lần chạy chồng nhau không làm mốc lùi lại
+	synchronized boolean advance(String target, Timestamp previous, Timestamp next) throws SQLException {
+		Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+		try (Connection conn = ConnectionPool.getConnection(controlDbUrl)) {
+			ensureTable(conn);
+			if (previous != null) {
+				try (PreparedStatement pstmt = conn.prepareStatement(
+						"UPDATE etl_watermark SET high_water_mark = ?, updated_at = ? WHERE target_name = ? AND high_water_mark = ?")) {
+					pstmt.setTimestamp(1, next);
+					pstmt.setTimestamp(2, now);
+					pstmt.setString(3, target);
+					pstmt.setTimestamp(4, previous);
+					return pstmt.executeUpdate() == 1;
+				}
+			}
+			// Lần đầu hoặc full rebuild: ghi đè mốc hiện có nếu nó nhỏ hơn
+			try (PreparedStatement pstmt = conn.prepareStatement(
+					"UPDATE etl_watermark SET high_water_mark = ?, updated_at = ? WHERE target_name = ? AND high_water_mark <= ?")) {
+				pstmt.setTimestamp(1, next);
+				pstmt.setTimestamp(2, now);
+				pstmt.setString(3, target);
+				pstmt.setTimestamp(4, next);
+				if (pstmt.executeUpdate() == 1) {
+					return true;
+				}
+			}
+			try (PreparedStatement pstmt = conn.prepareStatement(
+					"INSERT INTO etl_watermark (target_name, high_water_mark, updated_at) VALUES (?, ?, ?)")) {
+				pstmt.setString(1, target);
+				pstmt.setTimestamp(2, next);
+				pstmt.setTimestamp(3, now);
+				pstmt.executeUpdate();
+				return true;
+			} catch (SQLException e) {
+				// Khóa đã có với mốc lớn hơn: một lần chạy khác đã đi trước
+				return false;
+			}
+		}
+	}
+
+	private void ensureTable(Connection conn) throws SQLException {
+		if (tableChecked) {
+			return;
+		}
+		try (Statement stmt = conn.createStatement()) {
+			try {
+				stmt.executeQuery("SELECT 1 FROM etl_watermark WHERE 1 = 0").close();
+			} catch (SQLException e) {
+				stmt.execute(CREATE_TABLE_SQL);
+			}
+		}
+		tableChecked = true;
+	}
+}
@@ -0,0 +1,105 @@
+package com.dw;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// LineCSVReader, MappedCSVReader and GrowingFileReader (tail mode) must agree on where records end,
+// including quoted fields that contain line breaks
+class CSVRowReaderTest {
+    private static final String CSV = "name,brand,note\r\n"
+            + "Phone A,Brand A,plain\r\n"
+            + "\"Phone\nB\",Brand B,\"two\r\nlines, and a comma\"\r\n"
+            + "Phone \"C\",Brand C,\"say \"\"hi\"\"\nthere\"\n"
+            + "Điện thoại D,Brand D,\"\"\n"
+            + "Phone E,Brand E,last";
+
+    private static final List<List<String>> EXPECTED = List.of(
+            List.of("Phone A", "Brand A", "plain"),
+            List.of("Phone\nB", "Brand B", "two\r\nlines, and a comma"),
+            List.of("Phone \"C\"", "Brand C", "say \"hi\"\nthere"),
+            List.of("Điện thoại D", "Brand D", ""),
+            List.of("Phone E", "Brand E", "last"));
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void lineAndMappedReadersAgreeOnQuotedLineBreaks() throws IOException {
+        Path file = write("feed.csv", CSV);
+        assertEquals(EXPECTED, readAll(new LineCSVReader(file.toString())));
+        // Chunks far smaller than a record, so most cut points fall inside quoted fields
+        for (int chunkSize = 1; chunkSize <= 32; chunkSize++) {
+            assertEquals(EXPECTED, readAll(new MappedCSVReader(file.toString(), 2, chunkSize)), "chunk size " + chunkSize);
+        }
+    }
+
+    // A quoted field far longer than the boundary scan window, and no line break after the last record
+    @Test
+    void mappedReaderHandlesLongQuotedRecordsAndMissingFinalNewline() throws IOException {
+        // 200 KB without a line break forces a wider mapping; the quoted break after it is a cut point
+        String longField = "x".repeat(200_000) + "\n" + "y".repeat(10);
+        Path file = write("long.csv", "name,note\nshort,\"" + longField + "\"\nlast,one");
+        List<List<String>> expected = List.of(List.of("short", longField), List.of("last", "one"));
+        assertEquals(expected, readAll(new LineCSVReader(file.toString())));
+        for (int chunkSize : new int[]{1, 4096, 150_000, 1 << 20}) {
+            assertEquals(expected, readAll(new MappedCSVReader(file.toString(), 2, chunkSize)), "chunk size " + chunkSize);
+        }
+    }
+
+    @Test
+    void growingFileReaderWaitsForTheEndOfAQuotedRecord() throws IOException {
+        String body = CSV + "\n";
+        int split = body.indexOf("lines, and");
+        Path file = write("tail.csv", body.substring(0, split));
+
+        List<List<String>> records = new ArrayList<>();
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        try (GrowingFileReader reader = new GrowingFileReader(file.toString(), 0)) {
+            List<String> first = reader.readCompleteRecords(100);
+            // Header and Phone A only: the Phone B record is still open inside quotes
+            assertEquals(2, first.size());
+            long offset = reader.offset();
+            assertTrue(offset < split);
+
+            Files.writeString(file, body.substring(split), StandardOpenOption.APPEND);
+            List<String> all = new ArrayList<>(first);
+            all.addAll(reader.readCompleteRecords(100));
+            for (String record : all.subList(1, all.size())) {
+                tokenizer.tokenize(record);
+                records.add(List.of(tokenizer.fields()));
+            }
+            assertEquals(body.getBytes(StandardCharsets.UTF_8).length, reader.offset());
+        }
+        assertEquals(EXPECTED, records);
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(tempDir.resolve(name), content, StandardCharsets.UTF_8);
+    }
+
+    private static List<List<String>> readAll(CSVRowReader reader) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        try (reader) {
+            while (reader.next()) {
+                List<String> row = new ArrayList<>();
+                for (int i = 0; i < reader.fieldCount(); i++) {
+                    row.add(reader.field(i));
+                }
+                rows.add(row);
+                assertEquals(rows.size(), reader.rowNumber());
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,76 @@
+package com.dw;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CompressedInputTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void readsWholeCompressedFile() throws IOException {
+        byte[] content = randomText(3_000_000);
+        Path file = gzip(content, "full.csv.gz");
+        try (InputStream in = CompressedInput.open(file.toString())) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+    }
+
+    // Closing while the producer is still inflating must stop it cleanly, without closing the
+    // GZIPInputStream under it
+    @Test
+    void closeWhileProducerIsRunningStopsIt() throws IOException, InterruptedException {
+        Path file = gzip(randomText(20_000_000), "large.csv.gz");
+        for (int i = 0; i < 20; i++) {
+            InputStream in = CompressedInput.open(file.toString());
+            assertEquals(1024, in.readNBytes(1024).length);
+            in.close();
+            assertThrows(IOException.class, in::read);
+        }
+        Thread.sleep(100);
+        assertFalse(Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.getName().startsWith("decompress-") && thread.isAlive()));
+    }
+
+    @Test
+    void corruptDataSurfacesAsIOException() throws IOException {
+        byte[] compressed = Files.readAllBytes(gzip(randomText(1_000_000), "source.csv.gz"));
+        Arrays.fill(compressed, 100, 400, (byte) 0x5a);
+        Path file = tempDir.resolve("corrupt.csv.gz");
+        Files.write(file, compressed);
+        try (InputStream in = CompressedInput.open(file.toString())) {
+            assertThrows(IOException.class, in::readAllBytes);
+        }
+    }
+
+    private Path gzip(byte[] content, String name) throws IOException {
+        Path file = tempDir.resolve(name);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(content);
+        }
+        return file;
+    }
+
+    private static byte[] randomText(int size) {
+        Random random = new Random(size);
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i % 80 == 79 ? '\n' : 'a' + random.nextInt(26));
+        }
+        return content;
+    }
+}
@@ -0,0 +1,188 @@
+package com.dw;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectionPoolTest {
+    private String url;
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        url = TestDatabase.newUrl("pool");
+        pool = new ConnectionPool(url, 2, 200, 5, 0, 8);
+        try (Connection conn = pool.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO price_update_log (mobile_id, old_price, new_price) VALUES (1, 1, 2), (2, 2, 3)");
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+        ConnectionPool.closeAll();
+        ConnectionPool.configure(new Properties());
+    }
+
+    @Test
+    void reusesPhysicalConnectionsAndCachedStatements() throws SQLException {
+        for (int i = 0; i < 3; i++) {
+            try (Connection conn = pool.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM price_update_log WHERE mobile_id = ?")) {
+                stmt.setInt(1, 1);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertEquals(1, rs.getInt(1));
+                }
+            }
+        }
+        ConnectionPool.Stats stats = pool.stats();
+        assertEquals(1, stats.createdCount());
+        assertEquals(1, stats.statementCacheMisses());
+        assertEquals(2, stats.statementCacheHits());
+        assertEquals(0, stats.active());
+    }
+
+    @Test
+    void eachCheckoutGetsItsOwnStatementProxy() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            String sql = "SELECT mobile_id FROM price_update_log";
+            PreparedStatement first = conn.prepareStatement(sql);
+            first.close();
+            PreparedStatement second = conn.prepareStatement(sql);
+
+            assertNotSame(first, second);
+            assertTrue(first.isClosed());
+            assertFalse(second.isClosed());
+            assertThrows(SQLException.class, first::executeQuery);
+            // Closing the stale proxy again must not check in the statement the second caller holds
+            first.close();
+            try (ResultSet rs = second.executeQuery()) {
+                assertTrue(rs.next());
+            }
+            assertEquals(1, pool.stats().statementCacheHits());
+            second.close();
+        }
+    }
+
+    @Test
+    void closingStatementClosesItsResultSet() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            PreparedStatement stmt = conn.prepareStatement("SELECT mobile_id FROM price_update_log");
+            ResultSet rs = stmt.executeQuery();
+            assertTrue(rs.next());
+            stmt.close();
+            assertTrue(rs.isClosed());
+        }
+    }
+
+    @Test
+    void statementSettingsAreResetOnCheckIn() throws SQLException {
+        String sql = "SELECT mobile_id FROM price_update_log";
+        int defaultFetchSize;
+        int defaultQueryTimeout;
+        try (Connection conn = pool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            defaultFetchSize = stmt.getFetchSize();
+            defaultQueryTimeout = stmt.getQueryTimeout();
+            stmt.setFetchSize(defaultFetchSize + 17);
+            stmt.setQueryTimeout(defaultQueryTimeout + 30);
+            stmt.setMaxRows(1);
+        }
+        try (Connection conn = pool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            assertEquals(1, pool.stats().statementCacheHits());
+            assertEquals(defaultFetchSize, stmt.getFetchSize());
+            assertEquals(defaultQueryTimeout, stmt.getQueryTimeout());
+            assertEquals(0, stmt.getMaxRows());
+            try (ResultSet rs = stmt.executeQuery()) {
+                int rows = 0;
+                while (rs.next()) {
+                    rows++;
+                }
+                assertEquals(2, rows);
+            }
+        }
+    }
+
+    // Returning the connection must clean up what the borrower left open, as closing a physical connection did
+    @Test
+    void statementsLeftOpenAreClosedOnReturn() throws SQLException {
+        String sql = "SELECT mobile_id FROM price_update_log";
+        PreparedStatement leaked;
+        Statement plain;
+        ResultSet rs;
+        try (Connection conn = pool.getConnection()) {
+            leaked = conn.prepareStatement(sql);
+            rs = leaked.executeQuery();
+            plain = conn.createStatement();
+        }
+        assertTrue(leaked.isClosed());
+        assertTrue(rs.isClosed());
+        assertTrue(plain.isClosed());
+
+        // The cached statement was checked in, so the next borrow reuses it instead of preparing a new one
+        try (Connection conn = pool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            assertFalse(stmt.isClosed());
+        }
+        assertEquals(1, pool.stats().statementCacheMisses());
+        assertEquals(1, pool.stats().statementCacheHits());
+    }
+
+    @Test
+    void uncommittedWorkIsRolledBackOnReturn() throws SQLException {
+        try (Connection conn = pool.getConnection();
+             Statement stmt = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            stmt.execute("DELETE FROM price_update_log");
+        }
+        try (Connection conn = pool.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM price_update_log")) {
+            assertTrue(conn.getAutoCommit());
+            assertTrue(rs.next());
+            assertEquals(2, rs.getInt(1));
+        }
+    }
+
+    @Test
+    void borrowingBeyondMaxSizeTimesOut() throws SQLException {
+        try (Connection first = pool.getConnection();
+             Connection second = pool.getConnection()) {
+            assertEquals(2, pool.stats().active());
+            assertNotSame(first, second);
+            assertThrows(SQLException.class, pool::getConnection);
+        }
+        try (Connection conn = pool.getConnection()) {
+            assertFalse(conn.isClosed());
+        }
+    }
+
+    @Test
+    void sharedPoolsAreSizedFromConfiguredProperties() throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("pool.max.size", "1");
+        props.setProperty("pool.max.wait.ms", "50");
+        ConnectionPool.configure(props);
+
+        try (Connection conn = ConnectionPool.getConnection(url)) {
+            assertFalse(conn.isClosed());
+            assertThrows(SQLException.class, () -> ConnectionPool.getConnection(url));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.dw;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// MainApp's path: DatabaseConfig (falling back to config.properties) drives the error.log.* settings
+public class ErrorLoggerTest {
+    // sp_insert_error_log is called as staging.dbo.*, so the H2 database has to be named staging
+    private static final String URL = "jdbc:h2:mem:staging;MODE=MSSQLServer;DB_CLOSE_DELAY=-1";
+
+    @TempDir
+    Path tempDir;
+
+    @AfterAll
+    static void closePools() {
+        ConnectionPool.closeAll();
+    }
+
+    @Test
+    void asyncAggregatedLoggingFromSharedConfig() throws Exception {
+        configure(Map.of(
+                "error.log.async", "true",
+                "error.log.aggregate", "true",
+                "error.log.examples.per.key", "3",
+                "error.log.sample.size", "2"));
+
+        try (ErrorLogger errorLogger = new ErrorLogger(URL)) {
+            for (int row = 1; row <= 10; row++) {
+                errorLogger.logError("Transform", "ROW_PROCESSING_ERROR", "bad row", "mobiles.csv", row);
+            }
+        }
+
+        // 3 examples, 2 sampled rows and one summary, all written by the background writer
+        List<String> rows = loggedRows();
+        assertEquals(6, rows.size());
+        assertEquals(5, rows.stream().filter(row -> row.equals("ROW_PROCESSING_ERROR|error-log-writer")).count());
+        assertEquals(1, rows.stream().filter(row -> row.equals("ROW_PROCESSING_ERROR_SUMMARY|error-log-writer")).count());
+    }
+
+    // Tail mode interrupts its thread and then closes the logger; nothing queued may be lost
+    @Test
+    void closeFromInterruptedThreadFlushesTheQueue() throws Exception {
+        // Long interval and large batches, so every error is still queued when close() is called
+        configure(Map.of(
+                "error.log.async", "true",
+                "error.log.aggregate", "false",
+                "error.log.batch.size", "1000",
+                "error.log.flush.interval.ms", "60000"));
+
+        ErrorLogger errorLogger = new ErrorLogger(URL);
+        for (int row = 1; row <= 250; row++) {
+            errorLogger.logError("Extract", "ROW_PROCESSING_ERROR", "bad row", "tail.csv", row);
+        }
+        Thread.currentThread().interrupt();
+        errorLogger.close();
+
+        assertTrue(Thread.interrupted(), "close() must restore the interrupt flag");
+        assertEquals(250, loggedRows().size());
+    }
+
+    private void configure(Map<String, String> settings) throws Exception {
+        try (Connection conn = TestDatabase.open(URL);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS error_log (phase VARCHAR(50), error_type VARCHAR(50), "
+                    + "source_file VARCHAR(255), row_number INT, thread_name VARCHAR(100))");
+            stmt.execute("DELETE FROM error_log");
+            stmt.execute("CREATE SCHEMA IF NOT EXISTS dbo");
+            stmt.execute("CREATE ALIAS IF NOT EXISTS dbo.sp_insert_error_log FOR 'com.dw.ErrorLoggerTest.insertErrorLog'");
+        }
+        System.setProperty("etl.config", TestDatabase.writeConfig(tempDir, URL, settings).toString());
+        try {
+            DatabaseConfig.loadFromFile(tempDir.resolve("db-config.properties").toString());
+        } finally {
+            System.clearProperty("etl.config");
+        }
+    }
+
+    private static List<String> loggedRows() throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Connection conn = TestDatabase.open(URL);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT error_type, thread_name FROM error_log")) {
+            while (rs.next()) {
+                rows.add(rs.getString(1) + "|" + rs.getString(2));
+            }
+        }
+        return rows;
+    }
+
+    // Stand-in for sp_insert_error_log; public so that H2 can call it through CREATE ALIAS
+    public static void insertErrorLog(Connection conn, String phase, String errorType, String errorMessage,
+                                      String sourceFile, int rowNumber) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO error_log VALUES (?, ?, ?, ?, ?)")) {
+            stmt.setString(1, phase);
+            stmt.setString(2, errorType);
+            stmt.setString(3, sourceFile);
+            stmt.setInt(4, rowNumber);
+            stmt.setString(5, Thread.currentThread().getName());
+            stmt.executeUpdate();
+        }
+    }
+}
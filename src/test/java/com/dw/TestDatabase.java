@@ -0,0 +1,49 @@
+package com.dw;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Fresh in-memory H2 databases (SQL Server mode) created from test-schema.sql
+public final class TestDatabase {
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private TestDatabase() {
+    }
+
+    // A URL for a new, empty database; it lives until the JVM exits
+    public static String newUrl(String prefix) throws SQLException {
+        String url = "jdbc:h2:mem:" + prefix + "_" + COUNTER.incrementAndGet() + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1";
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("RUNSCRIPT FROM 'classpath:/test-schema.sql'");
+        }
+        return url;
+    }
+
+    public static Connection open(String url) throws SQLException {
+        return DriverManager.getConnection(url);
+    }
+
+    // Writes a config file pointing staging, warehouse and control at url, plus the given overrides
+    public static Path writeConfig(Path dir, String url, Map<String, String> overrides) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("staging.db.url", url);
+        props.setProperty("warehouse.db.url", url);
+        props.setProperty("control.db.url", url);
+        props.putAll(overrides);
+        Path config = dir.resolve("config-" + COUNTER.incrementAndGet() + ".properties");
+        try (OutputStream out = Files.newOutputStream(config)) {
+            props.store(out, null);
+        }
+        return config;
+    }
+}
@@ -0,0 +1,153 @@
+package thu3.ca2.nhom3;
+
+import com.dw.ConnectionPool;
+import com.dw.TestDatabase;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// loadCSV qua batch INSERT và qua BulkIngestEngine phải bỏ hàng tiêu đề và cho cùng các dòng đã đổi kiểu
+class CSVLoaderTest {
+	private static final int HEAP_MB = 32;
+	private static final int MODELS = 1_000;
+	private static final int PRICE_CHANGE_EVERY = 50;
+
+	@TempDir
+	Path tempDir;
+
+	@AfterAll
+	static void closePools() {
+		ConnectionPool.closeAll();
+	}
+
+	@Test
+	void bulkAndBatchLoadSkipHeaderAndAgree() throws Exception {
+		Path csv = tempDir.resolve("staging.csv");
+		Files.write(csv, List.of(
+				"id,name,brand,model,battery_capacity,screen_size,touchscreen,resolution_x,resolution_y,processor,"
+						+ "ram,internal_storage,rear_camera,front_camera,operating_system,price,loaded_date",
+				"1,Phone A,Brand A,Model A,4000,6.1,true,1080,2400,Chip,8,128,12MP,8MP,Android,199.5,2024-05-01 10:00:00",
+				"2,\"Phone, B\",Brand B,Model B,5000,6.7,false,1440,3200,Chip,12,256,50MP,12MP,Android,349,2024-05-02 11:30:00"));
+
+		String batchUrl = TestDatabase.newUrl("load_csv_batch");
+		String bulkUrl = TestDatabase.newUrl("load_csv_bulk");
+		assertEquals(2, load(batchUrl, csv, "batch"));
+		assertEquals(2, load(bulkUrl, csv, "bulk"));
+
+		List<String> expected = List.of(
+				"1|Phone A|4000|6.1|TRUE|199.5|2024-05-01 10:00:00",
+				"2|Phone, B|5000|6.7|FALSE|349.0|2024-05-02 11:30:00");
+		assertEquals(expected, rows(batchUrl));
+		assertEquals(expected, rows(bulkUrl));
+	}
+
+	// loadCSVToStaging phải đọc theo luồng: nạp một file lớn gấp nhiều lần -Xmx trong một JVM riêng mà không bị OOM
+	@Test
+	void streamingLoadHandlesFileLargerThanHeap() throws Exception {
+		Path csv = tempDir.resolve("large.csv");
+		long minBytes = 5L * HEAP_MB * 1024 * 1024;
+		int rows = writeLargeFeed(csv, minBytes);
+		assertTrue(Files.size(csv) > minBytes);
+
+		Process process = new ProcessBuilder(
+				Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+				"-Xmx" + HEAP_MB + "m", "-XX:+ExitOnOutOfMemoryError",
+				"-cp", System.getProperty("java.class.path"),
+				CSVLoaderTest.class.getName(), csv.toString(), tempDir.toString())
+				.redirectErrorStream(true)
+				.start();
+		String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+		assertTrue(process.waitFor(5, TimeUnit.MINUTES), output);
+		assertEquals(0, process.exitValue(), output);
+
+		// Mỗi model được thêm một lần, sau đó giá đổi sau mỗi PRICE_CHANGE_EVERY lượt
+		int passes = rows / MODELS;
+		int priceChanges = MODELS * ((passes - 1) / PRICE_CHANGE_EVERY);
+		String result = output.lines().filter(line -> line.startsWith("RESULT ")).findFirst().orElse(output);
+		assertEquals("RESULT " + MODELS + "|" + MODELS + "|" + priceChanges, result);
+	}
+
+	// Ghi trọn từng lượt MODELS dòng để số lần đổi giá tính được chính xác
+	private static int writeLargeFeed(Path csv, long minBytes) throws Exception {
+		int rows = 0;
+		long bytes = 0;
+		try (BufferedWriter writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+			writer.write("name,brand,model,battery_capacity,screen_size,touchscreen,resolution_x,resolution_y,processor,"
+					+ "ram,internal_storage,rear_camera,front_camera,operating_system,price\n");
+			while (bytes < minBytes) {
+				int pass = rows / MODELS;
+				for (int model = 0; model < MODELS; model++) {
+					String line = "Phone " + model + ",Brand " + (model % 20) + ",Model " + model
+							+ ",4000,6.1,Yes,1080,2400,Snapdragon 778G,8,128,48.0,12.0,Android,"
+							+ (100 + model + pass / PRICE_CHANGE_EVERY) + ".5\n";
+					writer.write(line);
+					bytes += line.length();
+					rows++;
+				}
+			}
+		}
+		return rows;
+	}
+
+	// Chạy trong JVM con với -Xmx nhỏ; in "RESULT số dòng thêm mới|số dòng staging|số dòng log giá"
+	public static void main(String[] args) throws Exception {
+		String url = TestDatabase.newUrl("load_csv_streaming");
+		Path config = TestDatabase.writeConfig(Path.of(args[1]), url, Map.of(
+				"csv.file.path", args[0],
+				"csv.load.streaming", "true"));
+		System.setProperty("etl.config", config.toString());
+		int loaded = new CSVLoader().loadCSVToStaging();
+		try (Connection conn = TestDatabase.open(url);
+			 Statement stmt = conn.createStatement();
+			 ResultSet rs = stmt.executeQuery("SELECT (SELECT COUNT(*) FROM staging_mobile), (SELECT COUNT(*) FROM price_update_log)")) {
+			rs.next();
+			System.out.println("RESULT " + loaded + "|" + rs.getInt(1) + "|" + rs.getInt(2));
+		} finally {
+			ConnectionPool.closeAll();
+		}
+	}
+
+	private int load(String url, Path csv, String mode) throws Exception {
+		System.setProperty("etl.config", TestDatabase.writeConfig(tempDir, url, Map.of("staging.ingest.mode", mode)).toString());
+		try {
+			CSVLoader loader = new CSVLoader();
+			loader.loadCSV(csv.toString(), "staging_mobile");
+			return loader.getRecordsProcessed();
+		} finally {
+			System.clearProperty("etl.config");
+		}
+	}
+
+	private static List<String> rows(String url) throws SQLException {
+		List<String> rows = new ArrayList<>();
+		try (Connection conn = TestDatabase.open(url);
+			 Statement stmt = conn.createStatement();
+			 ResultSet rs = stmt.executeQuery("SELECT id, name, battery_capacity, screen_size, touchscreen, price, "
+					 + "FORMATDATETIME(loaded_date, 'yyyy-MM-dd HH:mm:ss') FROM staging_mobile ORDER BY id")) {
+			while (rs.next()) {
+				StringBuilder row = new StringBuilder();
+				for (int i = 1; i <= 7; i++) {
+					row.append(i > 1 ? "|" : "").append(rs.getString(i));
+				}
+				rows.add(row.toString());
+			}
+		}
+		return rows;
+	}
+}
@@ -0,0 +1,45 @@
+package thu3.ca2.nhom3;
+
+import com.dw.TestDatabase;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Bộ nhớ đệm phải so sánh như collation của SQL Server: khác hoa thường hay khoảng trắng cuối vẫn trúng,
+// và nhiều cách viết của cùng một giá trị thì lấy khóa nhỏ nhất
+class DimensionKeyCacheTest {
+	@Test
+	void loadedKeysIgnoreCaseAndTrailingSpaces() throws Exception {
+		String url = TestDatabase.newUrl("dim_key_cache");
+		try (Connection conn = TestDatabase.open(url)) {
+			try (Statement stmt = conn.createStatement()) {
+				stmt.execute("INSERT INTO DimBrand (BrandName) VALUES ('APPLE'), ('Apple '), ('Samsung')");
+			}
+			DimensionKeyCache cache = new DimensionKeyCache(100);
+			assertEquals(1, cache.get(conn, "DimBrand", "BrandName", "Apple"));
+			assertEquals(1, cache.get(conn, "DimBrand", "BrandName", "apple  "));
+			assertEquals(3, cache.get(conn, "DimBrand", "BrandName", "SAMSUNG"));
+			assertEquals(0, cache.getMisses());
+		}
+	}
+
+	@Test
+	void primedKeysKeepTheSmallestKeyPerValue() throws Exception {
+		Map<String, Integer> keys = new LinkedHashMap<>();
+		keys.put("Apple ", 7);
+		keys.put("APPLE", 2);
+		keys.put("Nokia", 5);
+		DimensionKeyCache cache = new DimensionKeyCache(100);
+		cache.prime("DimBrand", "BrandName", keys);
+
+		// Đã nạp sẵn nên không cần kết nối
+		assertEquals(2, cache.get(null, "DimBrand", "BrandName", "apple"));
+		assertEquals(5, cache.get(null, "DimBrand", "BrandName", "nokia "));
+		assertEquals(0, cache.getMisses());
+	}
+}
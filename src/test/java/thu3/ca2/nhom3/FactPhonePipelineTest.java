@@ -0,0 +1,183 @@
+package thu3.ca2.nhom3;
+
+import com.dw.ConnectionPool;
+import com.dw.TestDatabase;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Nạp FactPhone qua pipeline (nhiều writer, chunk nhỏ, ghi dần) phải cho đúng kết quả của cách đọc tuần tự,
+// kể cả khi cùng một khóa xuất hiện ở nhiều chunk với giá khác nhau.
+class FactPhonePipelineTest {
+	@TempDir
+	Path tempDir;
+
+	@AfterAll
+	static void closePools() {
+		ConnectionPool.closeAll();
+	}
+
+	@Test
+	void pipelinedLoadMatchesSequentialLoad() throws Exception {
+		String sequentialUrl = TestDatabase.newUrl("fact_sequential");
+		String pipelinedUrl = TestDatabase.newUrl("fact_pipelined");
+		for (String url : List.of(sequentialUrl, pipelinedUrl)) {
+			seedStaging(url, 40);
+		}
+
+		load(sequentialUrl, Map.of("transform.pipeline.enable", "false"));
+		load(pipelinedUrl, Map.of(
+				"transform.pipeline.enable", "true",
+				"transform.pipeline.writers", "4",
+				"transform.pipeline.chunk.size", "7",
+				"transform.pipeline.queue.capacity", "2",
+				"transform.fact.batch.size", "5"));
+
+		List<String> expectedFacts = facts(sequentialUrl);
+		List<String> expectedLog = priceLog(sequentialUrl);
+		assertTrue(expectedLog.size() > 100, "the staging data should produce many price changes");
+		assertEquals(expectedFacts, facts(pipelinedUrl));
+		assertEquals(expectedLog, priceLog(pipelinedUrl));
+	}
+
+	@Test
+	void partitionedPipelinedLoadMatchesSequentialLoad() throws Exception {
+		String sequentialUrl = TestDatabase.newUrl("fact_sequential");
+		String partitionedUrl = TestDatabase.newUrl("fact_partitioned");
+		for (String url : List.of(sequentialUrl, partitionedUrl)) {
+			seedStaging(url, 40);
+		}
+
+		load(sequentialUrl, Map.of());
+		load(partitionedUrl, Map.of(
+				"transform.fact.parallelism", "3",
+				"transform.pipeline.enable", "true",
+				"transform.pipeline.writers", "3",
+				"transform.pipeline.chunk.size", "11",
+				"transform.fact.batch.size", "4"));
+
+		// Mỗi partition ghi log trong transaction riêng, nên chỉ thứ tự đổi giá của từng dòng fact được giữ
+		assertEquals(facts(sequentialUrl), facts(partitionedUrl));
+		assertEquals(priceLogPerFact(sequentialUrl), priceLogPerFact(partitionedUrl));
+	}
+
+	// Dòng fact có ModelKey NULL không thuộc partition nào, nên không được làm hỏng bước đối chiếu số dòng
+	@Test
+	void partitionedLoadIgnoresFactsWithoutModelKey() throws Exception {
+		String sequentialUrl = TestDatabase.newUrl("fact_sequential");
+		String partitionedUrl = TestDatabase.newUrl("fact_partitioned");
+		for (String url : List.of(sequentialUrl, partitionedUrl)) {
+			// Hai model (ModelKey 1 và 2) nên partition 0 không có dòng nào và nhóm NULL không bị che đi
+			seedStaging(url, 2);
+			try (Connection conn = TestDatabase.open(url);
+				 Statement stmt = conn.createStatement()) {
+				stmt.execute("INSERT INTO FactPhone (ModelKey, SpecKey, ProcessorKey, CameraKey, OSKey, Price) VALUES (NULL, 1, 1, 1, 1, 10)");
+			}
+		}
+
+		load(sequentialUrl, Map.of());
+		load(partitionedUrl, Map.of("transform.fact.parallelism", "3"));
+
+		assertEquals(facts(sequentialUrl), facts(partitionedUrl));
+	}
+
+	// keys khóa lặp lại ngẫu nhiên trên 3000 dòng, giá đổi thường xuyên
+	private static void seedStaging(String url, int keys) throws SQLException {
+		Random random = new Random(42);
+		String sql = "INSERT INTO staging_mobile (name, brand, model, battery_capacity, screen_size, touchscreen,"
+				+ " resolution_x, resolution_y, processor, ram, internal_storage, rear_camera, front_camera,"
+				+ " operating_system, price) VALUES (?, ?, ?, 4000, ?, 1, 1080, 2400, ?, 8, 128, ?, '12MP', ?, ?)";
+		try (Connection conn = TestDatabase.open(url);
+			 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+			for (int i = 0; i < 3000; i++) {
+				int key = random.nextInt(keys);
+				pstmt.setString(1, "Phone " + key);
+				pstmt.setString(2, "Brand " + key % 4);
+				pstmt.setString(3, "Model " + key);
+				pstmt.setDouble(4, 6.0 + key % 5 / 10.0);
+				pstmt.setString(5, "Chip " + key % 3);
+				pstmt.setString(6, "Camera " + key % 2);
+				pstmt.setString(7, "OS " + key % 2);
+				pstmt.setDouble(8, 100 + random.nextInt(4));
+				pstmt.addBatch();
+			}
+			pstmt.executeBatch();
+		}
+	}
+
+	private void load(String url, Map<String, String> overrides) throws Exception {
+		System.setProperty("etl.config", TestDatabase.writeConfig(tempDir, url, overrides).toString());
+		try (Connection stagingConn = TestDatabase.open(url);
+			 Connection warehouseConn = TestDatabase.open(url)) {
+			DataTransformer transformer = new DataTransformer();
+			transformer.loadDimensions(stagingConn, warehouseConn);
+			transformer.loadFactPhone(stagingConn, warehouseConn);
+		} finally {
+			System.clearProperty("etl.config");
+		}
+	}
+
+	// Dòng fact theo khóa tự nhiên (tên), không phụ thuộc vào khóa thay thế được sinh ra
+	private static List<String> facts(String url) throws SQLException {
+		return query(url, """
+				SELECT m.ModelName, p.ProcessorName, o.OSName, f.Price, CASE WHEN f.UpdatedDate IS NULL THEN 0 ELSE 1 END
+				FROM FactPhone f
+				JOIN DimModel m ON m.ModelKey = f.ModelKey
+				JOIN DimProcessor p ON p.ProcessorKey = f.ProcessorKey
+				JOIN DimOS o ON o.OSKey = f.OSKey
+				ORDER BY m.ModelName
+				""");
+	}
+
+	// Log đổi giá theo đúng thứ tự ghi
+	private static List<String> priceLog(String url) throws SQLException {
+		return query(url, """
+				SELECT m.ModelName, l.old_price, l.new_price
+				FROM fact_price_update_log l
+				JOIN FactPhone f ON f.PhoneKey = l.fact_id
+				JOIN DimModel m ON m.ModelKey = f.ModelKey
+				ORDER BY l.id
+				""");
+	}
+
+	private static List<String> priceLogPerFact(String url) throws SQLException {
+		return query(url, """
+				SELECT m.ModelName, l.old_price, l.new_price
+				FROM fact_price_update_log l
+				JOIN FactPhone f ON f.PhoneKey = l.fact_id
+				JOIN DimModel m ON m.ModelKey = f.ModelKey
+				ORDER BY m.ModelName, l.id
+				""");
+	}
+
+	private static List<String> query(String url, String sql) throws SQLException {
+		List<String> rows = new ArrayList<>();
+		try (Connection conn = TestDatabase.open(url);
+			 Statement stmt = conn.createStatement();
+			 ResultSet rs = stmt.executeQuery(sql)) {
+			int columns = rs.getMetaData().getColumnCount();
+			while (rs.next()) {
+				StringBuilder row = new StringBuilder();
+				for (int i = 1; i <= columns; i++) {
+					row.append(i > 1 ? "|" : "").append(rs.getString(i));
+				}
+				rows.add(row.toString());
+			}
+		}
+		return rows;
+	}
+}
@@ -0,0 +1,170 @@
+package thu3.ca2.nhom3;
+
+import com.dw.ConnectionPool;
+import com.dw.TestDatabase;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Hai cách upsert CSV vào staging_mobile (từng dòng và theo lô) phải cho cùng dữ liệu và cùng log đổi giá
+class StagingUpsertEngineTest {
+	private static final String HEADER = "name,brand,model,battery_capacity,screen_size,touchscreen,resolution_x,"
+			+ "resolution_y,processor,ram,internal_storage,rear_camera,front_camera,operating_system,price";
+
+	@TempDir
+	Path tempDir;
+
+	@AfterAll
+	static void closePools() {
+		ConnectionPool.closeAll();
+	}
+
+	@Test
+	void mergeEngineMatchesRowEngine() throws Exception {
+		Path csv = writeCsv();
+		String rowUrl = TestDatabase.newUrl("upsert_row");
+		String mergeUrl = TestDatabase.newUrl("upsert_merge");
+		for (String url : List.of(rowUrl, mergeUrl)) {
+			seedStaging(url);
+		}
+
+		// Cách từng dòng dùng chỉ mục trong bộ nhớ (mặc định), nên thấy cả dòng vừa thêm trong cùng batch
+		int loaded = load(rowUrl, csv, Map.of("staging.upsert.engine", "row", "staging.index.enable", "true"));
+		assertEquals(loaded, load(mergeUrl, csv, Map.of("staging.upsert.engine", "merge")));
+
+		List<String> expectedLog = priceLog(rowUrl);
+		assertTrue(expectedLog.size() > 500, "the CSV should produce many price changes");
+		assertEquals(stagingRows(rowUrl), stagingRows(mergeUrl));
+		assertEquals(expectedLog, priceLog(mergeUrl));
+	}
+
+	@Test
+	void mergeEngineKeepsEveryTransitionAndFirstInsertableRow() throws Exception {
+		Path csv = tempDir.resolve("edge.csv");
+		Files.write(csv, List.of(HEADER,
+				row("New", 1, "x", 100),    // dòng đầu không hợp lệ: bỏ qua
+				row("New", 1, "8", 110),    // dòng hợp lệ đầu tiên được thêm
+				row("New", 1, "8", 120),
+				row("New", 1, "x", 130),    // dòng không hợp lệ vẫn đổi giá
+				row("Phone 0", 0, "8", 0),  // giá NULL coi như 0: không đổi
+				row("Phone 0", 0, "8", 50),
+				row("Never", 2, "x", 10)));
+		String rowUrl = TestDatabase.newUrl("upsert_edge_row");
+		String mergeUrl = TestDatabase.newUrl("upsert_edge_merge");
+		for (String url : List.of(rowUrl, mergeUrl)) {
+			try (Connection conn = TestDatabase.open(url);
+				 Statement stmt = conn.createStatement()) {
+				stmt.execute("INSERT INTO staging_mobile (name, brand, model, price) VALUES ('Phone 0', 'Brand 0', 'Model 0', NULL)");
+			}
+		}
+
+		assertEquals(1, load(rowUrl, csv, Map.of("staging.upsert.engine", "row")));
+		assertEquals(1, load(mergeUrl, csv, Map.of("staging.upsert.engine", "merge")));
+
+		assertEquals(List.of("New|110.0|120.0", "New|120.0|130.0", "Phone 0|0.0|50.0"), namedPriceLog(mergeUrl));
+		assertEquals(stagingRows(rowUrl), stagingRows(mergeUrl));
+		assertEquals(priceLog(rowUrl), priceLog(mergeUrl));
+	}
+
+	// Một phần khóa đã có sẵn, một khóa có giá NULL
+	private static void seedStaging(String url) throws SQLException {
+		try (Connection conn = TestDatabase.open(url);
+			 Statement stmt = conn.createStatement()) {
+			for (int key = 0; key < 10; key++) {
+				stmt.addBatch("INSERT INTO staging_mobile (name, brand, model, price) VALUES ('Phone " + key
+						+ "', 'Brand " + key % 3 + "', 'Model " + key + "', " + (key == 0 ? "NULL" : 100 + key) + ")");
+			}
+			stmt.executeBatch();
+		}
+	}
+
+	// 2000 dòng trên 40 khóa (nhiều lô upsert), có dòng RAM không hợp lệ và dòng giá không hợp lệ
+	private Path writeCsv() throws IOException {
+		Random random = new Random(7);
+		List<String> lines = new ArrayList<>();
+		lines.add(HEADER);
+		for (int i = 0; i < 2000; i++) {
+			int key = random.nextInt(40);
+			String ram = random.nextInt(5) == 0 ? "n/a" : "8";
+			String price = random.nextInt(50) == 0 ? "unknown" : String.valueOf(100 + random.nextInt(4));
+			lines.add(line("Phone " + key, key % 3, key, ram, price));
+		}
+		Path csv = tempDir.resolve("mobiles.csv");
+		Files.write(csv, lines);
+		return csv;
+	}
+
+	private static String row(String name, int key, String ram, double price) {
+		return line(name, key, key, ram, String.valueOf(price));
+	}
+
+	private static String line(String name, int brand, int model, String ram, String price) {
+		return String.join(",", name, "Brand " + brand, "Model " + model, "4000", "6.1", "true", "1080", "2400",
+				"Chip", ram, "128", "12MP", "8MP", "Android", price);
+	}
+
+	private int load(String url, Path csv, Map<String, String> overrides) throws Exception {
+		Map<String, String> props = new HashMap<>(overrides);
+		props.put("csv.file.path", csv.toString());
+		System.setProperty("etl.config", TestDatabase.writeConfig(tempDir, url, props).toString());
+		try {
+			return new CSVLoader().loadCSVToStaging();
+		} finally {
+			System.clearProperty("etl.config");
+		}
+	}
+
+	private static List<String> stagingRows(String url) throws SQLException {
+		return query(url, """
+				SELECT id, name, brand, model, battery_capacity, screen_size, touchscreen, resolution_x, resolution_y,
+				       processor, ram, internal_storage, rear_camera, front_camera, operating_system, price,
+				       CASE WHEN last_updated IS NULL THEN 0 ELSE 1 END
+				FROM staging_mobile ORDER BY id
+				""");
+	}
+
+	private static List<String> priceLog(String url) throws SQLException {
+		return query(url, "SELECT mobile_id, old_price, new_price FROM price_update_log ORDER BY id");
+	}
+
+	private static List<String> namedPriceLog(String url) throws SQLException {
+		return query(url, """
+				SELECT m.name, l.old_price, l.new_price
+				FROM price_update_log l JOIN staging_mobile m ON m.id = l.mobile_id
+				ORDER BY l.id
+				""");
+	}
+
+	private static List<String> query(String url, String sql) throws SQLException {
+		List<String> rows = new ArrayList<>();
+		try (Connection conn = TestDatabase.open(url);
+			 Statement stmt = conn.createStatement();
+			 ResultSet rs = stmt.executeQuery(sql)) {
+			int columns = rs.getMetaData().getColumnCount();
+			while (rs.next()) {
+				StringBuilder row = new StringBuilder();
+				for (int i = 1; i <= columns; i++) {
+					row.append(i > 1 ? "|" : "").append(rs.getString(i));
+				}
+				rows.add(row.toString());
+			}
+		}
+		return rows;
+	}
+}
@@ -0,0 +1,44 @@
+package thu3.ca2.nhom3;
+
+import com.dw.TestDatabase;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Dòng commit sau khi lần trước đọc MAX nhưng có cùng thời điểm với mốc vẫn phải thuộc lần chạy sau
+class StagingWindowTest {
+	@Test
+	void rowsStampedAtTheWatermarkAreReadAgain() throws Exception {
+		String url = TestDatabase.newUrl("staging_window");
+		Timestamp watermark = Timestamp.valueOf("2026-01-01 10:00:00");
+		try (Connection conn = TestDatabase.open(url)) {
+			try (Statement stmt = conn.createStatement()) {
+				stmt.execute("INSERT INTO staging_mobile (model, loaded_date, last_updated) VALUES "
+						+ "('before', '2026-01-01 09:59:59', NULL), "
+						+ "('at watermark', '2026-01-01 10:00:00', NULL), "
+						+ "('repriced at watermark', '2026-01-01 09:00:00', '2026-01-01 10:00:00'), "
+						+ "('inside', '2026-01-01 10:00:01', NULL), "
+						+ "('after', '2026-01-01 10:00:03', NULL)");
+			}
+			StagingWindow window = new StagingWindow(watermark, Timestamp.valueOf("2026-01-01 10:00:02"));
+			List<String> models = new ArrayList<>();
+			try (PreparedStatement pstmt = conn.prepareStatement("SELECT model FROM staging_mobile" + window.where() + " ORDER BY id")) {
+				window.bind(pstmt);
+				try (ResultSet rs = pstmt.executeQuery()) {
+					while (rs.next()) {
+						models.add(rs.getString(1));
+					}
+				}
+			}
+			assertEquals(List.of("at watermark", "repriced at watermark", "inside"), models);
+		}
+	}
+}
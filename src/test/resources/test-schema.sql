@@ -0,0 +1,29 @@
+-- Staging and warehouse tables used by the tests (H2, MODE=MSSQLServer)
+CREATE TABLE IF NOT EXISTS staging_mobile (
+    id INT IDENTITY PRIMARY KEY,
+    name NVARCHAR(255), brand NVARCHAR(255), model NVARCHAR(255),
+    battery_capacity INT, screen_size FLOAT, touchscreen BIT, resolution_x INT, resolution_y INT,
+    processor NVARCHAR(255), ram INT, internal_storage INT, rear_camera NVARCHAR(255),
+    front_camera NVARCHAR(255), operating_system NVARCHAR(255), price FLOAT,
+    loaded_date DATETIME, last_updated DATETIME
+);
+CREATE TABLE IF NOT EXISTS price_update_log (
+    id INT IDENTITY PRIMARY KEY, mobile_id INT, old_price FLOAT, new_price FLOAT, updated_at DATETIME
+);
+
+CREATE TABLE IF NOT EXISTS DimBrand (BrandKey INT IDENTITY PRIMARY KEY, BrandName NVARCHAR(255));
+CREATE TABLE IF NOT EXISTS DimModel (ModelKey INT IDENTITY PRIMARY KEY, ModelName NVARCHAR(255), BrandKey INT);
+CREATE TABLE IF NOT EXISTS DimSpecification (
+    SpecKey INT IDENTITY PRIMARY KEY, BatteryCapacity INT, ScreenSize FLOAT, Touchscreen BIT,
+    ResolutionX INT, ResolutionY INT, RAM INT, InternalStorage INT
+);
+CREATE TABLE IF NOT EXISTS DimProcessor (ProcessorKey INT IDENTITY PRIMARY KEY, ProcessorName NVARCHAR(255));
+CREATE TABLE IF NOT EXISTS DimCamera (CameraKey INT IDENTITY PRIMARY KEY, RearCamera NVARCHAR(255), FrontCamera NVARCHAR(255));
+CREATE TABLE IF NOT EXISTS DimOS (OSKey INT IDENTITY PRIMARY KEY, OSName NVARCHAR(255));
+CREATE TABLE IF NOT EXISTS FactPhone (
+    PhoneKey INT IDENTITY PRIMARY KEY, ModelKey INT, SpecKey INT, ProcessorKey INT, CameraKey INT, OSKey INT,
+    Price FLOAT, CreatedDate DATETIME, UpdatedDate DATETIME
+);
+CREATE TABLE IF NOT EXISTS fact_price_update_log (
+    id INT IDENTITY PRIMARY KEY, fact_id INT, old_price FLOAT, new_price FLOAT, updated_at DATETIME
+);